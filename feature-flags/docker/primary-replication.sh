@@ -0,0 +1,5 @@
+#!/bin/bash
+# Lets the db-replica service stream WAL from this server (docker compose --profile read-replica).
+# Runs only when the data directory is first initialised.
+set -e
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
@@ -0,0 +1,262 @@
+package io.flamingock.flags.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.EvalResult;
+import io.flamingock.flags.engine.FlagEvaluator;
+import io.flamingock.flags.engine.FlagSnapshot;
+import io.flamingock.flags.engine.SnapshotDefinition;
+import io.flamingock.flags.engine.SnapshotFile;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Evaluates flags in-process against a snapshot downloaded from the feature-flags service, using
+ * the same engine as the server. The snapshot is refreshed in the background; when the service
+ * cannot be reached the client keeps serving the last snapshot it saw, and on startup falls back
+ * to the copy saved in {@code cacheFile} or {@code snapshotFile}.
+ */
+public final class FlagClient implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(FlagClient.class.getName());
+
+    private final URI snapshotUri;
+    private final Path cacheFile;
+    private final Path snapshotFile;
+    private final Duration requestTimeout;
+    private final HttpClient http;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService refresher;
+    private volatile FlagSnapshot snapshot = FlagSnapshot.EMPTY;
+    private volatile Instant lastRefresh;
+    private volatile String etag;
+
+    private FlagClient(Builder builder) {
+        this.snapshotUri = builder.baseUri.resolve("/flags/snapshot");
+        this.cacheFile = builder.cacheFile;
+        this.snapshotFile = builder.snapshotFile;
+        this.requestTimeout = builder.requestTimeout;
+        this.http = HttpClient.newBuilder().connectTimeout(builder.requestTimeout).build();
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "flag-client-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static Builder builder(URI baseUri) {
+        return new Builder(baseUri);
+    }
+
+    public boolean isEnabled(String flagName, String userId, Map<String, String> attrs) {
+        return FlagEvaluator.isEnabled(snapshot.get(flagName), userId, attrs);
+    }
+
+    public EvalResult evaluate(String flagName, String userId, Map<String, String> attrs) {
+        return FlagEvaluator.evaluate(snapshot.get(flagName), userId, attrs);
+    }
+
+    /**
+     * Like {@link #evaluate} but with the human-readable explanation filled in; meant for debugging.
+     */
+    public EvalResult explain(String flagName, String userId, Map<String, String> attrs) {
+        CompiledFlag flag = snapshot.get(flagName);
+        return FlagEvaluator.explain(flag, FlagEvaluator.evaluate(flag, userId, attrs));
+    }
+
+    public long snapshotVersion() {
+        return snapshot.version();
+    }
+
+    /**
+     * When the snapshot was last downloaded successfully, or {@code null} if it never was.
+     */
+    public Instant lastRefresh() {
+        return lastRefresh;
+    }
+
+    /**
+     * Downloads the snapshot now. Returns {@code false}, keeping the current snapshot, if the
+     * service could not be reached, answered with an error or sent a snapshot that does not
+     * compile. Never throws, so a bad response cannot cancel the scheduled refresh.
+     */
+    public boolean refresh() {
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(snapshotUri)
+                    .timeout(requestTimeout)
+                    .header("Accept", "application/json")
+                    .GET();
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            HttpResponse<byte[]> response = http.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() == 304) {
+                lastRefresh = Instant.now();
+                return true;
+            }
+            if (response.statusCode() != 200) {
+                log.warning("Flag snapshot request returned HTTP " + response.statusCode());
+                return false;
+            }
+            install(response.body());
+            etag = response.headers().firstValue("ETag").orElse(null);
+            lastRefresh = Instant.now();
+            saveCache(response.body());
+            publishSnapshotFile();
+            return true;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Could not download flag snapshot, keeping version " + snapshot.version(), e);
+            return false;
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Could not install downloaded flag snapshot, keeping version " + snapshot.version(), e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    private void start(Duration refreshInterval) {
+        if (!refresh() && !loadCache() && !loadSnapshotFile()) {
+            log.warning("No flag snapshot available from the service, " + cacheFile + " or " + snapshotFile
+                    + "; every flag evaluates to off");
+        }
+        long millis = refreshInterval.toMillis();
+        refresher.scheduleWithFixedDelay(this::refresh, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    private void install(byte[] body) throws IOException {
+        SnapshotDefinition definition = objectMapper.readValue(body, SnapshotDefinition.class);
+        snapshot = FlagSnapshot.compile(definition, (rule, e) ->
+                log.warning("Skipping targeting rule " + rule.id() + ": " + e.getMessage()));
+    }
+
+    private boolean loadCache() {
+        if (cacheFile == null || !Files.exists(cacheFile)) {
+            return false;
+        }
+        try {
+            install(Files.readAllBytes(cacheFile));
+            log.info("Serving last known good flag snapshot " + snapshot.version() + " from " + cacheFile);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "Could not read cached flag snapshot " + cacheFile, e);
+            return false;
+        }
+    }
+
+    private void saveCache(byte[] body) {
+        if (cacheFile == null) {
+            return;
+        }
+        try {
+            Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            Files.write(tmp, body);
+            try {
+                Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Could not save flag snapshot to " + cacheFile, e);
+        }
+    }
+
+    private boolean loadSnapshotFile() {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return false;
+        }
+        try {
+            snapshot = FlagSnapshot.compile(SnapshotFile.open(snapshotFile, (rule, e) -> {
+            }).definition(), (rule, e) -> log.warning("Skipping targeting rule " + rule.id() + ": " + e.getMessage()));
+            log.info("Serving flag snapshot " + snapshot.version() + " from " + snapshotFile);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "Could not read flag snapshot file " + snapshotFile, e);
+            return false;
+        }
+    }
+
+    private void publishSnapshotFile() {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            SnapshotFile.write(snapshot.definition(), snapshotFile);
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "Could not publish flag snapshot to " + snapshotFile, e);
+        }
+    }
+
+    public static final class Builder {
+
+        private final URI baseUri;
+        private Duration refreshInterval = Duration.ofSeconds(30);
+        private Duration requestTimeout = Duration.ofSeconds(5);
+        private Path cacheFile;
+        private Path snapshotFile;
+
+        private Builder(URI baseUri) {
+            this.baseUri = baseUri;
+        }
+
+        public Builder refreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+            return this;
+        }
+
+        public Builder requestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        /**
+         * Where to keep the last downloaded snapshot, so a restart while the service is down still
+         * evaluates flags as they last were.
+         */
+        public Builder cacheFile(Path cacheFile) {
+            this.cacheFile = cacheFile;
+            return this;
+        }
+
+        /**
+         * Where to publish each downloaded snapshot as a {@link SnapshotFile}, so other processes
+         * on the host can evaluate through {@link MappedFlagClient} instead of each polling the
+         * service.
+         */
+        public Builder snapshotFile(Path snapshotFile) {
+            this.snapshotFile = snapshotFile;
+            return this;
+        }
+
+        /**
+         * Creates the client and performs the first download before returning.
+         */
+        public FlagClient build() {
+            FlagClient client = new FlagClient(this);
+            client.start(refreshInterval);
+            return client;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package io.flamingock.flags.client;
+
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.EvalResult;
+import io.flamingock.flags.engine.FlagEvaluator;
+import io.flamingock.flags.engine.MappedSnapshot;
+import io.flamingock.flags.engine.SnapshotFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Evaluates flags from a {@link SnapshotFile} published on the same host by the feature-flags
+ * service or by a {@link FlagClient} with {@link FlagClient.Builder#snapshotFile}. Nothing is
+ * downloaded: every process maps the same file, and starts evaluating as soon as it is mapped,
+ * whether or not the service or Postgres are reachable. The file is checked for a replacement
+ * every {@code checkInterval}; a replacement that cannot be mapped is logged and the previous
+ * snapshot kept. A flag that cannot be compiled evaluates to off rather than throwing.
+ */
+public final class MappedFlagClient implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(MappedFlagClient.class.getName());
+
+    private final Path file;
+    private final ScheduledExecutorService watcher;
+    private final Set<String> unusable = ConcurrentHashMap.newKeySet();
+    private volatile MappedSnapshot snapshot;
+    private volatile Object fileIdentity;
+
+    private MappedFlagClient(Path file) {
+        this.file = file;
+        this.watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "flag-client-mapped");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Maps {@code file} before returning. If it does not exist yet, every flag evaluates to off
+     * until it appears.
+     */
+    public static MappedFlagClient open(Path file, Duration checkInterval) {
+        MappedFlagClient client = new MappedFlagClient(file);
+        if (!client.reload()) {
+            log.warning("No flag snapshot file at " + file + "; every flag evaluates to off");
+        }
+        long millis = checkInterval.toMillis();
+        client.watcher.scheduleWithFixedDelay(client::reload, millis, millis, TimeUnit.MILLISECONDS);
+        return client;
+    }
+
+    public boolean isEnabled(String flagName, String userId, Map<String, String> attrs) {
+        return FlagEvaluator.isEnabled(lookup(flagName), userId, attrs);
+    }
+
+    public EvalResult evaluate(String flagName, String userId, Map<String, String> attrs) {
+        return FlagEvaluator.evaluate(lookup(flagName), userId, attrs);
+    }
+
+    public EvalResult explain(String flagName, String userId, Map<String, String> attrs) {
+        CompiledFlag flag = lookup(flagName);
+        return FlagEvaluator.explain(flag, FlagEvaluator.evaluate(flag, userId, attrs));
+    }
+
+    /**
+     * Version of the mapped snapshot, or {@code 0} while there is none.
+     */
+    public long snapshotVersion() {
+        MappedSnapshot current = snapshot;
+        return current != null ? current.version() : 0;
+    }
+
+    /**
+     * Maps the file again if it has been replaced since it was last mapped. Returns whether a
+     * snapshot is mapped.
+     */
+    public boolean reload() {
+        try {
+            // Publishers replace the file by renaming a new one over it, so its identity changes.
+            Object identity = identity(Files.readAttributes(file, BasicFileAttributes.class));
+            if (snapshot != null && Objects.equals(identity, fileIdentity)) {
+                return true;
+            }
+            snapshot = SnapshotFile.open(file, (rule, e) ->
+                    log.warning("Skipping targeting rule " + rule.id() + ": " + e.getMessage()));
+            fileIdentity = identity;
+            unusable.clear();
+            return true;
+        } catch (NoSuchFileException e) {
+            return snapshot != null;
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "Could not map flag snapshot file " + file + ", keeping version "
+                    + snapshotVersion(), e);
+            return snapshot != null;
+        }
+    }
+
+    @Override
+    public void close() {
+        watcher.shutdownNow();
+    }
+
+    private CompiledFlag lookup(String flagName) {
+        MappedSnapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        try {
+            return current.get(flagName);
+        } catch (RuntimeException e) {
+            // Logged once per snapshot; until the file is replaced the flag evaluates to off.
+            if (unusable.add(flagName)) {
+                log.log(Level.WARNING, "Could not compile flag " + flagName + " from " + file
+                        + "; it evaluates to off", e);
+            }
+            return null;
+        }
+    }
+
+    private static Object identity(BasicFileAttributes attributes) {
+        Object key = attributes.fileKey();
+        return key != null ? key : attributes.lastModifiedTime();
+    }
+}
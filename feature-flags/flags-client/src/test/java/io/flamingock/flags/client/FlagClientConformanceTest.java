@@ -0,0 +1,47 @@
+package io.flamingock.flags.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.flamingock.flags.engine.conformance.ConformanceSuite;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FlagClientConformanceTest {
+
+    @TempDir
+    static Path cacheDir;
+
+    static FlagClient client;
+
+    @BeforeAll
+    static void startFromCachedSnapshot() throws Exception {
+        Path cacheFile = cacheDir.resolve("flags.json");
+        new ObjectMapper().writeValue(cacheFile.toFile(), ConformanceSuite.snapshot());
+        // Nothing listens on port 1, so the client has to fall back to the last known good snapshot.
+        client = FlagClient.builder(URI.create("http://127.0.0.1:1"))
+                .requestTimeout(Duration.ofMillis(200))
+                .cacheFile(cacheFile)
+                .build();
+    }
+
+    @AfterAll
+    static void close() {
+        client.close();
+    }
+
+    @ParameterizedTest
+    @MethodSource("io.flamingock.flags.engine.conformance.ConformanceSuite#cases")
+    void matchesServer(ConformanceSuite.Case testCase) {
+        assertEquals(testCase.expected(), client.evaluate(testCase.flag(), testCase.userId(), testCase.attributes()));
+        assertEquals(testCase.enabled(), client.isEnabled(testCase.flag(), testCase.userId(), testCase.attributes()));
+        assertEquals(testCase.explained(), client.explain(testCase.flag(), testCase.userId(), testCase.attributes()));
+    }
+}
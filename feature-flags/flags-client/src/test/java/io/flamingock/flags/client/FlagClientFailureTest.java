@@ -0,0 +1,87 @@
+package io.flamingock.flags.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.flamingock.flags.engine.FlagDefinition;
+import io.flamingock.flags.engine.SnapshotDefinition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlagClientFailureTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+
+    @AfterEach
+    void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void keepsLastGoodSnapshotWhenDownloadDoesNotCompile() throws Exception {
+        AtomicReference<byte[]> body = new AtomicReference<>(snapshot(1, 1));
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/flags/snapshot", exchange -> {
+            byte[] bytes = body.get();
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+
+        try (FlagClient client = FlagClient.builder(URI.create("http://127.0.0.1:" + server.getAddress().getPort()))
+                .requestTimeout(Duration.ofSeconds(2))
+                .build()) {
+            assertEquals(1, client.snapshotVersion());
+
+            body.set(snapshot(2, 99));
+            assertFalse(client.refresh());
+            assertEquals(1, client.snapshotVersion());
+            assertTrue(client.isEnabled("dark-mode", "user-1", Map.of()));
+
+            body.set(snapshot(3, 1));
+            assertTrue(client.refresh());
+            assertEquals(3, client.snapshotVersion());
+        }
+    }
+
+    @Test
+    void startsEmptyWhenCachedSnapshotDoesNotCompile() throws Exception {
+        Path cacheFile = dir.resolve("flags.json");
+        Files.write(cacheFile, snapshot(5, 99));
+
+        // Nothing listens on port 1, so the client can only try the cache.
+        try (FlagClient client = FlagClient.builder(URI.create("http://127.0.0.1:1"))
+                .requestTimeout(Duration.ofMillis(200))
+                .cacheFile(cacheFile)
+                .build()) {
+            assertEquals(0, client.snapshotVersion());
+            assertFalse(client.isEnabled("dark-mode", "user-1", Map.of()));
+        }
+    }
+
+    private byte[] snapshot(long version, int bucketingVersion) throws Exception {
+        FlagDefinition flag = new FlagDefinition("dark-mode", true, 10_000, bucketingVersion, List.of());
+        return objectMapper.writeValueAsBytes(new SnapshotDefinition(version, List.of(flag)));
+    }
+}
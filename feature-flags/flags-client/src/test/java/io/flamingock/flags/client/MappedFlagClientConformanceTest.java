@@ -0,0 +1,42 @@
+package io.flamingock.flags.client;
+
+import io.flamingock.flags.engine.SnapshotFile;
+import io.flamingock.flags.engine.conformance.ConformanceSuite;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MappedFlagClientConformanceTest {
+
+    @TempDir
+    static Path snapshotDir;
+
+    static MappedFlagClient client;
+
+    @BeforeAll
+    static void mapSnapshotFile() throws Exception {
+        Path snapshotFile = snapshotDir.resolve("flags.snapshot");
+        SnapshotFile.write(ConformanceSuite.snapshot(), snapshotFile);
+        client = MappedFlagClient.open(snapshotFile, Duration.ofMinutes(1));
+    }
+
+    @AfterAll
+    static void close() {
+        client.close();
+    }
+
+    @ParameterizedTest
+    @MethodSource("io.flamingock.flags.engine.conformance.ConformanceSuite#cases")
+    void matchesServer(ConformanceSuite.Case testCase) {
+        assertEquals(testCase.expected(), client.evaluate(testCase.flag(), testCase.userId(), testCase.attributes()));
+        assertEquals(testCase.enabled(), client.isEnabled(testCase.flag(), testCase.userId(), testCase.attributes()));
+        assertEquals(testCase.explained(), client.explain(testCase.flag(), testCase.userId(), testCase.attributes()));
+    }
+}
@@ -0,0 +1,91 @@
+package io.flamingock.flags.client;
+
+import io.flamingock.flags.engine.FlagDefinition;
+import io.flamingock.flags.engine.SnapshotDefinition;
+import io.flamingock.flags.engine.SnapshotFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedFlagClientFailureTest {
+
+    // Header, two index slots, name hash, then the name, enabled and rollout before it.
+    private static final int BUCKETING_VERSION_OFFSET = 32 + 2 * Integer.BYTES + Integer.BYTES
+            + Integer.BYTES + "dark-mode".length() + 1 + Integer.BYTES;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void keepsLastGoodSnapshotWhenReplacementDoesNotMap() throws Exception {
+        Path file = dir.resolve("flags.snapshot");
+        write(file, 1, 1);
+
+        try (MappedFlagClient client = MappedFlagClient.open(file, Duration.ofMinutes(1))) {
+            assertEquals(1, client.snapshotVersion());
+
+            write(file, 2, 99);
+            assertTrue(client.reload());
+            assertEquals(1, client.snapshotVersion());
+            assertTrue(client.isEnabled("dark-mode", "user-1", Map.of()));
+
+            write(file, 3, 1);
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(dir.resolve("truncated"), Arrays.copyOf(bytes, bytes.length - 4));
+            Files.move(dir.resolve("truncated"), file, StandardCopyOption.REPLACE_EXISTING);
+            assertTrue(client.reload());
+            assertEquals(1, client.snapshotVersion());
+
+            write(file, 4, 1);
+            assertTrue(client.reload());
+            assertEquals(4, client.snapshotVersion());
+        }
+    }
+
+    @Test
+    void startsEmptyWhenSnapshotFileDoesNotMap() throws Exception {
+        Path file = dir.resolve("flags.snapshot");
+        write(file, 5, 99);
+
+        try (MappedFlagClient client = MappedFlagClient.open(file, Duration.ofMinutes(1))) {
+            assertEquals(0, client.snapshotVersion());
+            assertFalse(client.isEnabled("dark-mode", "user-1", Map.of()));
+        }
+    }
+
+    @Test
+    void flagOverwrittenInPlaceEvaluatesToOff() throws Exception {
+        Path file = dir.resolve("flags.snapshot");
+        write(file, 6, 1);
+
+        try (MappedFlagClient client = MappedFlagClient.open(file, Duration.ofMinutes(1))) {
+            // Not how publishers replace the file, but the mapping sees it before the flag is compiled.
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 99), BUCKETING_VERSION_OFFSET);
+            }
+
+            assertFalse(client.isEnabled("dark-mode", "user-1", Map.of()));
+            assertFalse(client.evaluate("dark-mode", "user-1", Map.of()).enabled());
+            assertEquals(6, client.snapshotVersion());
+        }
+    }
+
+    private static void write(Path file, long version, int bucketingVersion) throws Exception {
+        FlagDefinition flag = new FlagDefinition("dark-mode", true, 10_000, bucketingVersion, List.of());
+        SnapshotFile.write(new SnapshotDefinition(version, List.of(flag)), file);
+    }
+}
@@ -0,0 +1,61 @@
+package io.flamingock.flags.engine.benchmarks;
+
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.CompiledRule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * In-memory fixtures shared by the benchmarks.
+ */
+final class BenchmarkFlags {
+
+    /**
+     * Attributes of a typical user. None of the rules built by {@link #flag} match them, so an
+     * evaluation goes through every rule before falling back to the rollout.
+     */
+    static final Map<String, String> ATTRIBUTES = Map.of(
+            "plan", "free",
+            "country", "US",
+            "email", "someone@corp.io",
+            "age", "17",
+            "app", "2.0.0",
+            "device", "android");
+
+    private BenchmarkFlags() {
+    }
+
+    /**
+     * A flag whose rules cycle through the common operators, each against an attribute the user has.
+     */
+    static CompiledFlag flag(String name, int ruleCount, int rolloutBasisPoints, int bucketingVersion) {
+        List<CompiledRule> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            rules.add(switch (i % 7) {
+                case 0 -> rule(i, "plan", "equals", "pro-" + i);
+                case 1 -> rule(i, "country", "in", "DE,FR,IT,ES,R" + i);
+                case 2 -> rule(i, "email", "starts_with", "qa-" + i);
+                case 3 -> rule(i, "email", "contains", "@example-" + i + ".com");
+                case 4 -> rule(i, "age", "gte", Integer.toString(18 + i));
+                case 5 -> rule(i, "app", "semver_gte", "2.1." + i);
+                default -> rule(i, "device", "matches", "ip(ad|hone)-" + i);
+            });
+        }
+        return CompiledFlag.of(name, true, rolloutBasisPoints, bucketingVersion, rules);
+    }
+
+    static CompiledRule rule(int id, String attribute, String operator, String value) {
+        return CompiledRule.compile(new UUID(0, id), attribute, operator, value);
+    }
+
+    static String[] userIds(int count) {
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = "user-" + (i * 7919);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,44 @@
+package io.flamingock.flags.engine.benchmarks;
+
+import io.flamingock.flags.engine.CompiledFlag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rollout bucket computation: version 1 (SHA-256) against version 2 (MurmurHash3).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BucketBenchmark {
+
+    @Param({"1", "2"})
+    int bucketingVersion;
+
+    CompiledFlag flag;
+
+    @Setup
+    public void setUp() {
+        flag = CompiledFlag.of("checkout", true, 5000, bucketingVersion, List.of());
+    }
+
+    @Benchmark
+    public int bucket(Users users) {
+        return flag.bucket(users.next());
+    }
+}
@@ -0,0 +1,95 @@
+package io.flamingock.flags.engine.benchmarks;
+
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.FlagEvaluator;
+import io.flamingock.flags.engine.FlagSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Many threads evaluating against one published snapshot, as request threads do, with and without
+ * a writer continuously publishing single-flag updates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContendedEvaluateBenchmark {
+
+    private static final int FLAGS = 500;
+
+    @State(Scope.Benchmark)
+    public static class Published {
+
+        final AtomicReference<FlagSnapshot> snapshot = new AtomicReference<>();
+        final String[] names = new String[FLAGS];
+
+        @Setup
+        public void setUp() {
+            List<CompiledFlag> flags = new ArrayList<>(FLAGS);
+            for (int i = 0; i < FLAGS; i++) {
+                names[i] = "flag-" + i;
+                flags.add(BenchmarkFlags.flag(names[i], i % 12, (i * 37) % 10001, 2));
+            }
+            snapshot.set(FlagSnapshot.of(1, flags));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+
+        String flagName(Published published) {
+            return published.names[next++ % FLAGS];
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean readers(Published published, Cursor cursor, Users users) {
+        return read(published, cursor, users);
+    }
+
+    @Benchmark
+    @Group("readersWithWriter")
+    @GroupThreads(7)
+    public boolean reader(Published published, Cursor cursor, Users users) {
+        return read(published, cursor, users);
+    }
+
+    @Benchmark
+    @Group("readersWithWriter")
+    @GroupThreads(1)
+    public FlagSnapshot writer(Published published, Cursor cursor) {
+        String name = cursor.flagName(published);
+        FlagSnapshot current = published.snapshot.get();
+        CompiledFlag updated = BenchmarkFlags.flag(name, 6, (int) (current.version() % 10001), 2);
+        FlagSnapshot next = current.with(current.version() + 1, List.of(name), Map.of(name, updated));
+        published.snapshot.set(next);
+        return next;
+    }
+
+    private static boolean read(Published published, Cursor cursor, Users users) {
+        CompiledFlag flag = published.snapshot.get().get(cursor.flagName(published));
+        return FlagEvaluator.isEnabled(flag, users.next(), BenchmarkFlags.ATTRIBUTES);
+    }
+}
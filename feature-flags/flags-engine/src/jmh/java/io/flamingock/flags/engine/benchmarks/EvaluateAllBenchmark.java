@@ -0,0 +1,59 @@
+package io.flamingock.flags.engine.benchmarks;
+
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.EvalResult;
+import io.flamingock.flags.engine.FlagEvaluator;
+import io.flamingock.flags.engine.FlagSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every flag in a snapshot for one user, the way {@code POST /flags/evaluate} does it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluateAllBenchmark {
+
+    @Param({"50", "500", "5000"})
+    int flagCount;
+
+    FlagSnapshot snapshot;
+
+    @Setup
+    public void setUp() {
+        List<CompiledFlag> flags = new ArrayList<>(flagCount);
+        for (int i = 0; i < flagCount; i++) {
+            flags.add(BenchmarkFlags.flag("flag-" + i, i % 4, (i * 37) % 10001, 2));
+        }
+        snapshot = FlagSnapshot.of(1, flags);
+    }
+
+    @Benchmark
+    public Map<String, EvalResult> evaluateAll(Users users) {
+        String userId = users.next();
+        Map<String, EvalResult> results = new LinkedHashMap<>(Math.max(16, snapshot.size() * 2));
+        for (CompiledFlag flag : snapshot.flags()) {
+            results.put(flag.name(), FlagEvaluator.evaluate(flag, userId, BenchmarkFlags.ATTRIBUTES));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,59 @@
+package io.flamingock.flags.engine.benchmarks;
+
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.EvalResult;
+import io.flamingock.flags.engine.FlagEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single flag evaluation for a user no rule matches, across rule counts and rollouts. Compare
+ * {@code evaluate} with {@code explain} under {@code -prof gc} for the cost of explanations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluateBenchmark {
+
+    @Param({"0", "5", "50", "500"})
+    int ruleCount;
+
+    @Param({"0", "2500", "10000"})
+    int rolloutBasisPoints;
+
+    CompiledFlag flag;
+
+    @Setup
+    public void setUp() {
+        flag = BenchmarkFlags.flag("checkout", ruleCount, rolloutBasisPoints, 2);
+    }
+
+    @Benchmark
+    public EvalResult evaluate(Users users) {
+        return FlagEvaluator.evaluate(flag, users.next(), BenchmarkFlags.ATTRIBUTES);
+    }
+
+    @Benchmark
+    public boolean isEnabled(Users users) {
+        return FlagEvaluator.isEnabled(flag, users.next(), BenchmarkFlags.ATTRIBUTES);
+    }
+
+    @Benchmark
+    public EvalResult explain(Users users) {
+        return FlagEvaluator.explain(flag, FlagEvaluator.evaluate(flag, users.next(), BenchmarkFlags.ATTRIBUTES));
+    }
+}
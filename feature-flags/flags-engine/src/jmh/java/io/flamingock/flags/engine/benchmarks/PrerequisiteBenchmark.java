@@ -0,0 +1,88 @@
+package io.flamingock.flags.engine.benchmarks;
+
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.EvalResult;
+import io.flamingock.flags.engine.FlagEvaluator;
+import io.flamingock.flags.engine.FlagSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every flag in a snapshot for one user when flags require others: each flag past the first layer
+ * requires two of the layer before, so the layers below are shared by everything above them.
+ * {@code perFlag} evaluates each flag on its own, recomputing its prerequisites every time;
+ * {@code memoized} shares one memo across the request, as {@code POST /flags/evaluate} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrerequisiteBenchmark {
+
+    private static final int LAYER_SIZE = 50;
+
+    @Param({"1", "3", "6"})
+    int layers;
+
+    FlagSnapshot snapshot;
+
+    @Setup
+    public void setUp() {
+        List<CompiledFlag> flags = new ArrayList<>(layers * LAYER_SIZE);
+        for (int layer = 0; layer < layers; layer++) {
+            for (int i = 0; i < LAYER_SIZE; i++) {
+                CompiledFlag flag = BenchmarkFlags.flag(name(layer, i), i % 4, 9000 + i, 2);
+                if (layer > 0) {
+                    // Linked to the snapshot's instances by FlagSnapshot.of.
+                    flag = flag.withPrerequisites(List.of(CompiledFlag.unresolved(name(layer - 1, i)),
+                            CompiledFlag.unresolved(name(layer - 1, (i + 1) % LAYER_SIZE))));
+                }
+                flags.add(flag);
+            }
+        }
+        snapshot = FlagSnapshot.of(1, flags);
+    }
+
+    @Benchmark
+    public Map<String, EvalResult> perFlag(Users users) {
+        String userId = users.next();
+        Map<String, EvalResult> results = new LinkedHashMap<>(Math.max(16, snapshot.size() * 2));
+        for (CompiledFlag flag : snapshot.flags()) {
+            results.put(flag.name(), FlagEvaluator.evaluate(flag, userId, BenchmarkFlags.ATTRIBUTES));
+        }
+        return results;
+    }
+
+    @Benchmark
+    public Map<String, EvalResult> memoized(Users users) {
+        String userId = users.next();
+        Map<String, EvalResult> results = new LinkedHashMap<>(Math.max(16, snapshot.size() * 2));
+        Map<String, EvalResult> memo = new HashMap<>(Math.max(16, snapshot.size() * 2));
+        for (CompiledFlag flag : snapshot.flags()) {
+            results.put(flag.name(), FlagEvaluator.evaluate(flag, userId, BenchmarkFlags.ATTRIBUTES, memo));
+        }
+        return results;
+    }
+
+    private static String name(int layer, int i) {
+        return "flag-" + layer + "-" + i;
+    }
+}
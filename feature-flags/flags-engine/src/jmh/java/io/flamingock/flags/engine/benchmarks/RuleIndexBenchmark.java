@@ -0,0 +1,71 @@
+package io.flamingock.flags.engine.benchmarks;
+
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.CompiledRule;
+import io.flamingock.flags.engine.FlagEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A customer allowlist split into {@code in} rules of 100 values each, plus a prefix rule and a
+ * numeric rule, looked up with a mix of listed and unlisted customers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleIndexBenchmark {
+
+    private static final int VALUES_PER_RULE = 100;
+
+    @Param({"10", "1000", "100000"})
+    int values;
+
+    CompiledFlag flag;
+    Map<String, String>[] lookups;
+    int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        List<CompiledRule> rules = new ArrayList<>();
+        for (int start = 0; start < values; start += VALUES_PER_RULE) {
+            StringBuilder members = new StringBuilder();
+            for (int i = start; i < Math.min(values, start + VALUES_PER_RULE); i++) {
+                members.append(members.isEmpty() ? "" : ",").append('c').append(i);
+            }
+            rules.add(BenchmarkFlags.rule(rules.size(), "customer", "in", members.toString()));
+        }
+        rules.add(BenchmarkFlags.rule(rules.size(), "customer", "starts_with", "beta-"));
+        rules.add(BenchmarkFlags.rule(rules.size(), "tier", "lt", "3"));
+        flag = CompiledFlag.of("allowlist", true, 0, 2, rules);
+
+        Random random = new Random(42);
+        lookups = new Map[1024];
+        for (int i = 0; i < lookups.length; i++) {
+            lookups[i] = Map.of("customer", "c" + random.nextInt(values * 2), "tier", "5");
+        }
+    }
+
+    @Benchmark
+    public boolean firstMatch(Users users) {
+        return FlagEvaluator.isEnabled(flag, users.next(), lookups[next++ & (lookups.length - 1)]);
+    }
+}
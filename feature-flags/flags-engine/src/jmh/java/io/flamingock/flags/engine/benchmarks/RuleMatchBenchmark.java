@@ -0,0 +1,64 @@
+package io.flamingock.flags.engine.benchmarks;
+
+import io.flamingock.flags.engine.CompiledRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CompiledRule#matches} per operator, for an attribute value that matches and one that
+ * does not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleMatchBenchmark {
+
+    @Param({"equals", "contains", "in", "starts_with", "matches", "gte", "semver_gte"})
+    String operator;
+
+    CompiledRule rule;
+    Map<String, String> hit;
+    Map<String, String> miss;
+
+    @Setup
+    public void setUp() {
+        String[] operandHitMiss = switch (operator) {
+            case "equals" -> new String[]{"pro", "pro", "free"};
+            case "contains" -> new String[]{"@example.com", "me@example.com", "me@corp.io"};
+            case "in" -> new String[]{"DE,FR,IT,ES,PT,NL,BE", "NL", "US"};
+            case "starts_with" -> new String[]{"qa-", "qa-17", "dev-17"};
+            case "matches" -> new String[]{"ip(ad|hone)", "iphone", "android"};
+            case "gte" -> new String[]{"18", "21", "17"};
+            case "semver_gte" -> new String[]{"2.1.0", "2.3.4", "2.0.9"};
+            default -> throw new IllegalArgumentException(operator);
+        };
+        rule = BenchmarkFlags.rule(1, "value", operator, operandHitMiss[0]);
+        hit = Map.of("value", operandHitMiss[1]);
+        miss = Map.of("value", operandHitMiss[2]);
+    }
+
+    @Benchmark
+    public boolean matchHit() {
+        return rule.matches(hit);
+    }
+
+    @Benchmark
+    public boolean matchMiss() {
+        return rule.matches(miss);
+    }
+}
@@ -0,0 +1,18 @@
+package io.flamingock.flags.engine.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Rotates through a fixed set of user ids so results and buckets are not constant-folded.
+ */
+@State(Scope.Thread)
+public class Users {
+
+    private final String[] ids = BenchmarkFlags.userIds(1024);
+    private int next;
+
+    String next() {
+        return ids[next++ & (ids.length - 1)];
+    }
+}
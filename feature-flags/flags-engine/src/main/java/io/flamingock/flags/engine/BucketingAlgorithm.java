@@ -0,0 +1,30 @@
+package io.flamingock.flags.engine;
+
+/**
+ * Maps a user to a rollout bucket in {@code [0, BASIS_POINTS)}. Every flag records the version it
+ * was created with, so introducing a new algorithm never moves users of existing flags between
+ * buckets.
+ */
+public interface BucketingAlgorithm {
+
+    int BASIS_POINTS = 10_000;
+
+    int CURRENT_VERSION = Murmur3Bucketing.VERSION;
+
+    int version();
+
+    /**
+     * Per-flag input computed once when the flag is compiled, so the hot path only hashes the user id.
+     */
+    int seed(String flagName);
+
+    int bucket(String flagName, int seed, String userId);
+
+    static BucketingAlgorithm forVersion(int version) {
+        return switch (version) {
+            case Sha256Bucketing.VERSION -> Sha256Bucketing.INSTANCE;
+            case Murmur3Bucketing.VERSION -> Murmur3Bucketing.INSTANCE;
+            default -> throw new IllegalArgumentException("unknown bucketing version: " + version);
+        };
+    }
+}
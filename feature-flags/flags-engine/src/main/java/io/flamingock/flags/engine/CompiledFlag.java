@@ -0,0 +1,106 @@
+package io.flamingock.flags.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * A flag ready to evaluate. {@code prerequisites} are the flags it requires, in the order they were
+ * added; a snapshot links them to its own instances, see {@link FlagSnapshot}. Until then, and for
+ * prerequisites the snapshot does not have, they are {@link #unresolved} placeholders, which are
+ * off.
+ */
+public record CompiledFlag(String name, boolean enabled, int rolloutBasisPoints,
+                           BucketingAlgorithm bucketing, int bucketSeed, List<CompiledRule> rules, RuleIndex ruleIndex,
+                           List<CompiledFlag> prerequisites) {
+
+    public CompiledFlag {
+        rules = List.copyOf(rules);
+        prerequisites = List.copyOf(prerequisites);
+    }
+
+    public static CompiledFlag of(String name, boolean enabled, int rolloutBasisPoints, int bucketingVersion, List<CompiledRule> rules) {
+        return of(name, enabled, rolloutBasisPoints, bucketingVersion, rules, List.of());
+    }
+
+    public static CompiledFlag of(String name, boolean enabled, int rolloutBasisPoints, int bucketingVersion,
+                                  List<CompiledRule> rules, List<CompiledFlag> prerequisites) {
+        BucketingAlgorithm bucketing = BucketingAlgorithm.forVersion(bucketingVersion);
+        return new CompiledFlag(name, enabled, rolloutBasisPoints, bucketing, bucketing.seed(name), rules,
+                RuleIndex.build(rules), prerequisites);
+    }
+
+    /**
+     * Stands in for a prerequisite that is not linked: a disabled flag with nothing else to it.
+     */
+    public static CompiledFlag unresolved(String name) {
+        return of(name, false, 0, BucketingAlgorithm.CURRENT_VERSION, List.of());
+    }
+
+    /**
+     * Compiles a stored flag. Rules that no longer compile are reported to {@code onInvalidRule} and
+     * left out, so they never match, the same as before operators were validated.
+     */
+    public static CompiledFlag compile(FlagDefinition definition, BiConsumer<RuleDefinition, IllegalArgumentException> onInvalidRule) {
+        return compile(definition, new SegmentTable(), onInvalidRule);
+    }
+
+    /**
+     * Same as {@link #compile(FlagDefinition, BiConsumer)}, with {@code in_segment} rules looking
+     * up {@code segments}.
+     */
+    public static CompiledFlag compile(FlagDefinition definition, SegmentTable segments,
+                                       BiConsumer<RuleDefinition, IllegalArgumentException> onInvalidRule) {
+        List<CompiledRule> rules = new ArrayList<>(definition.rules().size());
+        for (RuleDefinition rule : definition.rules()) {
+            try {
+                rules.add(CompiledRule.compile(rule, segments));
+            } catch (IllegalArgumentException e) {
+                onInvalidRule.accept(rule, e);
+            }
+        }
+        List<CompiledFlag> prerequisites = definition.prerequisites().stream().map(CompiledFlag::unresolved).toList();
+        return of(definition.name(), definition.enabled(), definition.rolloutBasisPoints(), definition.bucketingVersion(),
+                rules, prerequisites);
+    }
+
+    public FlagDefinition definition() {
+        return new FlagDefinition(name, enabled, rolloutBasisPoints, bucketing.version(),
+                rules.stream().map(CompiledRule::definition).toList(), prerequisiteNames());
+    }
+
+    public List<String> prerequisiteNames() {
+        return prerequisites.stream().map(CompiledFlag::name).toList();
+    }
+
+    /**
+     * The same flag requiring {@code prerequisites} instead, which must have the same names in the
+     * same order. Rules are not compiled again.
+     */
+    public CompiledFlag withPrerequisites(List<CompiledFlag> prerequisites) {
+        return new CompiledFlag(name, enabled, rolloutBasisPoints, bucketing, bucketSeed, rules, ruleIndex, prerequisites);
+    }
+
+    /**
+     * Returns the earliest-added rule that matches {@code attrs}, or {@code null} if none does.
+     */
+    public CompiledRule firstMatch(Map<String, String> attrs) {
+        return ruleIndex.firstMatch(attrs);
+    }
+
+    public CompiledRule rule(UUID id) {
+        for (CompiledRule rule : rules) {
+            if (Objects.equals(rule.id(), id)) {
+                return rule;
+            }
+        }
+        throw new IllegalArgumentException("no rule " + id + " on flag " + name);
+    }
+
+    public int bucket(String userId) {
+        return bucketing.bucket(name, bucketSeed, userId);
+    }
+}
@@ -0,0 +1,42 @@
+package io.flamingock.flags.engine;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * A targeting rule with its operand already parsed. {@link #compile} is also how rules are
+ * validated before they are stored.
+ */
+public record CompiledRule(UUID id, String attribute, RuleOperator operator, String value, Predicate<String> predicate,
+                           EvalResult matchResult) {
+
+    public static CompiledRule compile(UUID id, String attribute, String operator, String value) {
+        return compile(id, attribute, operator, value, new SegmentTable());
+    }
+
+    public static CompiledRule compile(UUID id, String attribute, String operator, String value, SegmentTable segments) {
+        if (attribute == null || attribute.isBlank()) {
+            throw new IllegalArgumentException("attribute is required");
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("value is required");
+        }
+        RuleOperator op = RuleOperator.fromCode(operator);
+        return new CompiledRule(id, attribute, op, value, op.compile(value, segments),
+                new EvalResult(true, EvalResult.Reason.RULE_MATCH, id, EvalResult.NO_BUCKET, null, null));
+    }
+
+    public static CompiledRule compile(RuleDefinition definition, SegmentTable segments) {
+        return compile(definition.id(), definition.attribute(), definition.operator(), definition.value(), segments);
+    }
+
+    public RuleDefinition definition() {
+        return new RuleDefinition(id, attribute, operator.code(), value);
+    }
+
+    public boolean matches(Map<String, String> attrs) {
+        String attrValue = attrs.get(attribute);
+        return attrValue != null && predicate.test(attrValue);
+    }
+}
@@ -0,0 +1,33 @@
+package io.flamingock.flags.engine;
+
+import java.util.UUID;
+
+/**
+ * Outcome of evaluating a flag. {@code ruleId} is set for {@link Reason#RULE_MATCH},
+ * {@code bucket} for the rollout reasons (otherwise {@code -1}) and {@code prerequisite}, the
+ * first prerequisite that was off, for {@link Reason#PREREQUISITE_FAILED}. The human-readable
+ * {@code explanation} is only filled in by {@link FlagEvaluator#explain}.
+ */
+public record EvalResult(boolean enabled, Reason reason, UUID ruleId, int bucket, String prerequisite,
+                         String explanation) {
+
+    public enum Reason {
+        FLAG_NOT_FOUND,
+        FLAG_DISABLED,
+        PREREQUISITE_FAILED,
+        RULE_MATCH,
+        FULL_ROLLOUT,
+        IN_ROLLOUT,
+        OUTSIDE_ROLLOUT
+    }
+
+    public static final int NO_BUCKET = -1;
+
+    static EvalResult of(boolean enabled, Reason reason) {
+        return new EvalResult(enabled, reason, null, NO_BUCKET, null, null);
+    }
+
+    EvalResult withExplanation(String explanation) {
+        return new EvalResult(enabled, reason, ruleId, bucket, prerequisite, explanation);
+    }
+}
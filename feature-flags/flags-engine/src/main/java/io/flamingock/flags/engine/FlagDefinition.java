@@ -0,0 +1,21 @@
+package io.flamingock.flags.engine;
+
+import java.util.List;
+
+/**
+ * A flag and its rules as stored and as sent to subscribers, before compilation.
+ * {@code prerequisites} names the flags that must be on for this one to be; a missing list means
+ * none, so definitions from older servers and snapshot files still read.
+ */
+public record FlagDefinition(String name, boolean enabled, int rolloutBasisPoints, int bucketingVersion,
+                             List<RuleDefinition> rules, List<String> prerequisites) {
+
+    public FlagDefinition {
+        prerequisites = prerequisites != null ? List.copyOf(prerequisites) : List.of();
+    }
+
+    public FlagDefinition(String name, boolean enabled, int rolloutBasisPoints, int bucketingVersion,
+                          List<RuleDefinition> rules) {
+        this(name, enabled, rolloutBasisPoints, bucketingVersion, rules, List.of());
+    }
+}
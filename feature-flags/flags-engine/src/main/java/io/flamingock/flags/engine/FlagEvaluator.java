@@ -0,0 +1,132 @@
+package io.flamingock.flags.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The evaluation rules shared by the server and the embedded client: a disabled flag is off, so is
+ * one with a prerequisite that is off for the user, the first matching targeting rule turns it on,
+ * and otherwise the user's rollout bucket decides.
+ */
+public final class FlagEvaluator {
+
+    public static final EvalResult NOT_FOUND = EvalResult.of(false, EvalResult.Reason.FLAG_NOT_FOUND);
+
+    private static final EvalResult DISABLED = EvalResult.of(false, EvalResult.Reason.FLAG_DISABLED);
+    private static final EvalResult FULL_ROLLOUT = EvalResult.of(true, EvalResult.Reason.FULL_ROLLOUT);
+
+    private FlagEvaluator() {
+    }
+
+    /**
+     * Returns a reason code rather than text: results for missing, disabled and fully rolled out
+     * flags and for each rule are shared instances, so only rollout and prerequisite decisions
+     * allocate.
+     */
+    public static EvalResult evaluate(CompiledFlag flag, String userId, Map<String, String> attrs) {
+        if (flag == null) {
+            return NOT_FOUND;
+        }
+        if (flag.prerequisites().isEmpty()) {
+            return decide(flag, userId, attrs);
+        }
+        return evaluate(flag, userId, attrs, new HashMap<>());
+    }
+
+    /**
+     * Same as {@link #evaluate(CompiledFlag, String, Map)}, computing each flag at most once for
+     * everything evaluated with the same {@code memo}: results of enabled flags, prerequisites
+     * included, are kept there by name. A memo is only good for one user and set of attributes,
+     * e.g. for one request that evaluates many flags that share prerequisites.
+     */
+    public static EvalResult evaluate(CompiledFlag flag, String userId, Map<String, String> attrs,
+                                      Map<String, EvalResult> memo) {
+        if (flag == null) {
+            return NOT_FOUND;
+        }
+        if (!flag.enabled()) {
+            return DISABLED;
+        }
+        EvalResult result = memo.get(flag.name());
+        if (result == null) {
+            result = prerequisitesMet(flag, userId, attrs, memo);
+            if (result == null) {
+                result = decide(flag, userId, attrs);
+            }
+            memo.put(flag.name(), result);
+        }
+        return result;
+    }
+
+    /**
+     * {@code null} if every prerequisite is on, otherwise the result naming the first that is not.
+     * Prerequisites were linked in dependency order, so this recursion always ends.
+     */
+    private static EvalResult prerequisitesMet(CompiledFlag flag, String userId, Map<String, String> attrs,
+                                               Map<String, EvalResult> memo) {
+        for (CompiledFlag prerequisite : flag.prerequisites()) {
+            if (!evaluate(prerequisite, userId, attrs, memo).enabled()) {
+                return new EvalResult(false, EvalResult.Reason.PREREQUISITE_FAILED, null, EvalResult.NO_BUCKET,
+                        prerequisite.name(), null);
+            }
+        }
+        return null;
+    }
+
+    private static EvalResult decide(CompiledFlag flag, String userId, Map<String, String> attrs) {
+        if (!flag.enabled()) {
+            return DISABLED;
+        }
+
+        CompiledRule rule = flag.firstMatch(attrs);
+        if (rule != null) {
+            return rule.matchResult();
+        }
+
+        if (flag.rolloutBasisPoints() >= BucketingAlgorithm.BASIS_POINTS) {
+            return FULL_ROLLOUT;
+        }
+
+        int bucket = flag.bucket(userId);
+        boolean inRollout = bucket < flag.rolloutBasisPoints();
+        return new EvalResult(inRollout,
+                inRollout ? EvalResult.Reason.IN_ROLLOUT : EvalResult.Reason.OUTSIDE_ROLLOUT,
+                null, bucket, null, null);
+    }
+
+    /**
+     * Same decision as {@link #evaluate}, without building a result unless the flag has
+     * prerequisites.
+     */
+    public static boolean isEnabled(CompiledFlag flag, String userId, Map<String, String> attrs) {
+        if (flag == null || !flag.enabled()) {
+            return false;
+        }
+        if (!flag.prerequisites().isEmpty()) {
+            return evaluate(flag, userId, attrs).enabled();
+        }
+        if (flag.firstMatch(attrs) != null || flag.rolloutBasisPoints() >= BucketingAlgorithm.BASIS_POINTS) {
+            return true;
+        }
+        return flag.bucket(userId) < flag.rolloutBasisPoints();
+    }
+
+    /**
+     * Adds the human-readable explanation to a result produced by {@link #evaluate} for the same flag.
+     */
+    public static EvalResult explain(CompiledFlag flag, EvalResult result) {
+        String explanation = switch (result.reason()) {
+            case FLAG_NOT_FOUND -> "flag not found";
+            case FLAG_DISABLED -> "flag disabled";
+            case PREREQUISITE_FAILED -> "prerequisite " + result.prerequisite() + " is off";
+            case RULE_MATCH -> {
+                CompiledRule rule = flag.rule(result.ruleId());
+                yield "targeting rule matched: " + rule.attribute() + " " + rule.operator().code() + " " + rule.value();
+            }
+            case FULL_ROLLOUT -> "rollout 100%";
+            case IN_ROLLOUT -> "in rollout bucket " + result.bucket() + " < " + flag.rolloutBasisPoints() + "bp";
+            case OUTSIDE_ROLLOUT -> "outside rollout bucket " + result.bucket() + " >= " + flag.rolloutBasisPoints() + "bp";
+        };
+        return result.withExplanation(explanation);
+    }
+}
@@ -0,0 +1,147 @@
+package io.flamingock.flags.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable view of every flag and its rules. A new instance is built on each change and
+ * published as a whole, so readers never observe a partially applied update.
+ * <p>
+ * Each flag's prerequisites are linked to the snapshot's own instances of them, in prerequisite
+ * order, so evaluating a flag never looks anything up. A prerequisite the snapshot does not have,
+ * or one on a cycle, stays {@link CompiledFlag#unresolved} and is therefore off.
+ */
+public final class FlagSnapshot {
+
+    public static final FlagSnapshot EMPTY = new FlagSnapshot(0, Map.of(), new SegmentTable());
+
+    private final long version;
+    private final Map<String, CompiledFlag> flags;
+    private final SegmentTable segments;
+    private final boolean hasPrerequisites;
+
+    private FlagSnapshot(long version, Map<String, CompiledFlag> flags, SegmentTable segments) {
+        this.version = version;
+        this.flags = Collections.unmodifiableMap(flags);
+        this.segments = segments;
+        this.hasPrerequisites = flags.values().stream().anyMatch(flag -> !flag.prerequisites().isEmpty());
+    }
+
+    public static FlagSnapshot of(long version, Collection<CompiledFlag> flags) {
+        return of(version, flags, new SegmentTable());
+    }
+
+    /**
+     * {@code segments} must be the table the flags' {@code in_segment} rules were compiled against.
+     */
+    public static FlagSnapshot of(long version, Collection<CompiledFlag> flags, SegmentTable segments) {
+        Map<String, CompiledFlag> byName = new HashMap<>(Math.max(16, flags.size() * 2));
+        for (CompiledFlag flag : flags) {
+            byName.put(flag.name(), flag);
+        }
+        return new FlagSnapshot(version, link(byName), segments);
+    }
+
+    public static FlagSnapshot compile(SnapshotDefinition definition, BiConsumer<RuleDefinition, IllegalArgumentException> onInvalidRule) {
+        SegmentTable segments = SegmentTable.of(definition.segments() != null ? definition.segments() : List.of());
+        List<CompiledFlag> flags = new ArrayList<>(definition.flags().size());
+        for (FlagDefinition flag : definition.flags()) {
+            flags.add(CompiledFlag.compile(flag, segments, onInvalidRule));
+        }
+        return of(definition.version(), flags, segments);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public CompiledFlag get(String name) {
+        return flags.get(name);
+    }
+
+    public Collection<CompiledFlag> flags() {
+        return flags.values();
+    }
+
+    /**
+     * Segments are shared by every snapshot compiled against the same table, and change in place.
+     */
+    public SegmentTable segments() {
+        return segments;
+    }
+
+    public SnapshotDefinition definition() {
+        return new SnapshotDefinition(version, flags.values().stream().map(CompiledFlag::definition).toList(),
+                segments.definitions());
+    }
+
+    public int size() {
+        return flags.size();
+    }
+
+    /**
+     * Whether any flag requires another, i.e. whether evaluating many flags for one user is worth
+     * a memo, see {@link FlagEvaluator#evaluate(CompiledFlag, String, Map, Map)}.
+     */
+    public boolean hasPrerequisites() {
+        return hasPrerequisites;
+    }
+
+    /**
+     * Returns a copy where every flag in {@code names} is replaced by its entry in {@code reloaded},
+     * or removed when it has none. Flags with prerequisites are all linked again, since any of
+     * them may require one that was replaced.
+     */
+    public FlagSnapshot with(long version, Collection<String> names, Map<String, CompiledFlag> reloaded) {
+        Map<String, CompiledFlag> next = new HashMap<>(flags);
+        for (String name : names) {
+            CompiledFlag flag = reloaded.get(name);
+            if (flag == null) {
+                next.remove(name);
+            } else {
+                next.put(name, flag);
+            }
+        }
+        return new FlagSnapshot(version, link(next), segments);
+    }
+
+    /**
+     * Relinks {@code byName} in place; only flags with prerequisites are replaced.
+     */
+    private static Map<String, CompiledFlag> link(Map<String, CompiledFlag> byName) {
+        Map<String, List<String>> graph = new HashMap<>();
+        for (CompiledFlag flag : byName.values()) {
+            if (!flag.prerequisites().isEmpty()) {
+                graph.put(flag.name(), flag.prerequisiteNames());
+            }
+        }
+        if (graph.isEmpty()) {
+            return byName;
+        }
+        PrerequisiteGraph.Order order = PrerequisiteGraph.sort(graph);
+        for (String name : order.sorted()) {
+            if (graph.containsKey(name)) {
+                byName.put(name, linked(byName.get(name), byName, order.cyclic()));
+            }
+        }
+        for (String name : order.cyclic()) {
+            byName.put(name, linked(byName.get(name), byName, order.cyclic()));
+        }
+        return byName;
+    }
+
+    private static CompiledFlag linked(CompiledFlag flag, Map<String, CompiledFlag> byName, Set<String> cyclic) {
+        List<CompiledFlag> prerequisites = new ArrayList<>(flag.prerequisites().size());
+        for (CompiledFlag unlinked : flag.prerequisites()) {
+            CompiledFlag prerequisite = cyclic.contains(unlinked.name()) ? null : byName.get(unlinked.name());
+            prerequisites.add(prerequisite != null ? prerequisite : CompiledFlag.unresolved(unlinked.name()));
+        }
+        return flag.withPrerequisites(prerequisites);
+    }
+}
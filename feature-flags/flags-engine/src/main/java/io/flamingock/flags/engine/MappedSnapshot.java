@@ -0,0 +1,299 @@
+package io.flamingock.flags.engine;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link SnapshotFile} mapped read-only. Looking up a flag reads the index and the flag's record
+ * in place; only that flag is decoded and compiled, once, on first use. Segments are read when the
+ * file is mapped. Mapping a file with thousands of flags therefore costs little more than one
+ * pass over it until flags are evaluated, and the pages are shared with every other process
+ * mapping the same file.
+ * A flag's prerequisites are looked up and linked along with it.
+ * <p>
+ * Every flag record is walked once when the file is mapped, without decoding it, so a truncated
+ * file or a flag with an unknown bucketing version is rejected by {@link SnapshotFile#open} rather
+ * than failing when the flag is first looked up.
+ * <p>
+ * Safe for concurrent use: the buffer is only read with absolute gets.
+ */
+public final class MappedSnapshot {
+
+    private final MappedByteBuffer buffer;
+    private final int format;
+    private final long version;
+    private final int flagCount;
+    private final int slots;
+    private final SegmentTable segments;
+    private final BiConsumer<RuleDefinition, IllegalArgumentException> onInvalidRule;
+    private final Map<String, CompiledFlag> compiled = new ConcurrentHashMap<>();
+
+    private MappedSnapshot(MappedByteBuffer buffer, BiConsumer<RuleDefinition, IllegalArgumentException> onInvalidRule)
+            throws IOException {
+        this.buffer = buffer;
+        this.onInvalidRule = onInvalidRule;
+        if (buffer.capacity() < SnapshotFile.HEADER_BYTES || buffer.getInt(0) != SnapshotFile.MAGIC
+                || buffer.getInt(4) < 1 || buffer.getInt(4) > SnapshotFile.FORMAT) {
+            throw new IOException("not a flag snapshot file");
+        }
+        this.format = buffer.getInt(4);
+        this.version = buffer.getLong(8);
+        this.flagCount = buffer.getInt(16);
+        this.slots = buffer.getInt(20);
+        if (slots < 1 || Integer.bitCount(slots) != 1
+                || slots > (buffer.capacity() - SnapshotFile.HEADER_BYTES) / Integer.BYTES) {
+            throw new IOException("corrupt flag snapshot index: " + slots + " slots");
+        }
+        for (int slot = 0; slot < slots; slot++) {
+            int offset = buffer.getInt(SnapshotFile.HEADER_BYTES + slot * Integer.BYTES);
+            if (offset != 0) {
+                checkFlag(offset);
+            }
+        }
+        try {
+            this.segments = SegmentTable.of(readSegments(buffer.getInt(24), buffer.getInt(28)));
+        } catch (RuntimeException e) {
+            throw new IOException("corrupt flag snapshot segments", e);
+        }
+    }
+
+    static MappedSnapshot map(Path file, BiConsumer<RuleDefinition, IllegalArgumentException> onInvalidRule)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            return new MappedSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), onInvalidRule);
+        }
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int size() {
+        return flagCount;
+    }
+
+    public SegmentTable segments() {
+        return segments;
+    }
+
+    /**
+     * The compiled flag named {@code name}, or {@code null} if the snapshot has none.
+     */
+    public CompiledFlag get(String name) {
+        CompiledFlag flag = compiled.get(name);
+        if (flag != null) {
+            return flag;
+        }
+        return load(name, new HashSet<>());
+    }
+
+    /**
+     * Compiles {@code name} and, first, its prerequisites. One that is already being linked further
+     * up, i.e. on a cycle, stays unresolved, as in {@link FlagSnapshot}.
+     */
+    private CompiledFlag load(String name, Set<String> linking) {
+        CompiledFlag flag = compiled.get(name);
+        if (flag != null) {
+            return flag;
+        }
+        int offset = find(name);
+        if (offset == 0) {
+            return null;
+        }
+        flag = CompiledFlag.compile(readFlag(offset), segments, onInvalidRule);
+        if (!flag.prerequisites().isEmpty()) {
+            linking.add(name);
+            List<CompiledFlag> prerequisites = new ArrayList<>(flag.prerequisites().size());
+            for (CompiledFlag unlinked : flag.prerequisites()) {
+                CompiledFlag prerequisite = linking.contains(unlinked.name()) ? null : load(unlinked.name(), linking);
+                prerequisites.add(prerequisite != null ? prerequisite : unlinked);
+            }
+            linking.remove(name);
+            flag = flag.withPrerequisites(prerequisites);
+        }
+        // Not computeIfAbsent: linking looks up other flags, which must not happen inside it.
+        CompiledFlag raced = compiled.putIfAbsent(name, flag);
+        return raced != null ? raced : flag;
+    }
+
+    /**
+     * Decodes the whole file, e.g. to build a regular {@link FlagSnapshot} from it.
+     */
+    public SnapshotDefinition definition() {
+        List<FlagDefinition> flags = new ArrayList<>(flagCount);
+        for (int slot = 0; slot < slots; slot++) {
+            int offset = buffer.getInt(SnapshotFile.HEADER_BYTES + slot * Integer.BYTES);
+            if (offset != 0) {
+                flags.add(readFlag(offset));
+            }
+        }
+        return new SnapshotDefinition(version, flags, segments.definitions());
+    }
+
+    private int find(String name) {
+        int hash = name.hashCode();
+        byte[] utf8 = null;
+        int mask = slots - 1;
+        for (int slot = hash & mask, probes = 0; probes < slots; slot = (slot + 1) & mask, probes++) {
+            int offset = buffer.getInt(SnapshotFile.HEADER_BYTES + slot * Integer.BYTES);
+            if (offset == 0) {
+                return 0;
+            }
+            if (buffer.getInt(offset) != hash) {
+                continue;
+            }
+            if (utf8 == null) {
+                utf8 = name.getBytes(StandardCharsets.UTF_8);
+            }
+            if (nameEquals(offset + Integer.BYTES, utf8)) {
+                return offset;
+            }
+        }
+        return 0;
+    }
+
+    private boolean nameEquals(int at, byte[] utf8) {
+        if (buffer.getInt(at) != utf8.length) {
+            return false;
+        }
+        int start = at + Integer.BYTES;
+        for (int i = 0; i < utf8.length; i++) {
+            if (buffer.get(start + i) != utf8[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Walks the record at {@code offset} the way {@link #readFlag} does, without decoding it.
+     */
+    private void checkFlag(int offset) throws IOException {
+        try {
+            Reader in = new Reader(offset + Integer.BYTES);
+            in.skipString();
+            in.bool();
+            in.int32();
+            BucketingAlgorithm.forVersion(in.int32());
+            int ruleCount = in.count();
+            for (int i = 0; i < ruleCount; i++) {
+                in.bool();
+                in.int64();
+                in.int64();
+                in.skipString();
+                in.skipString();
+                in.skipString();
+            }
+            if (format >= 2) {
+                int prerequisiteCount = in.count();
+                for (int i = 0; i < prerequisiteCount; i++) {
+                    in.skipString();
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("corrupt flag record at offset " + offset, e);
+        }
+    }
+
+    private FlagDefinition readFlag(int offset) {
+        Reader in = new Reader(offset + Integer.BYTES);
+        String name = in.string();
+        boolean enabled = in.bool();
+        int rolloutBasisPoints = in.int32();
+        int bucketingVersion = in.int32();
+        int ruleCount = in.int32();
+        List<RuleDefinition> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            boolean hasId = in.bool();
+            long msb = in.int64();
+            long lsb = in.int64();
+            rules.add(new RuleDefinition(hasId ? new UUID(msb, lsb) : null, in.string(), in.string(), in.string()));
+        }
+        List<String> prerequisites = new ArrayList<>();
+        if (format >= 2) {
+            int prerequisiteCount = in.int32();
+            for (int i = 0; i < prerequisiteCount; i++) {
+                prerequisites.add(in.string());
+            }
+        }
+        return new FlagDefinition(name, enabled, rolloutBasisPoints, bucketingVersion, rules, prerequisites);
+    }
+
+    private List<SegmentDefinition> readSegments(int offset, int count) {
+        Reader in = new Reader(offset);
+        List<SegmentDefinition> definitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = in.string();
+            long[] members = new long[in.int32()];
+            for (int m = 0; m < members.length; m++) {
+                members[m] = in.int64();
+            }
+            definitions.add(new SegmentDefinition(name, members));
+        }
+        return definitions;
+    }
+
+    /**
+     * Sequential reads over the shared buffer without touching its position.
+     */
+    private final class Reader {
+
+        private int at;
+
+        Reader(int at) {
+            this.at = at;
+        }
+
+        boolean bool() {
+            return buffer.get(at++) != 0;
+        }
+
+        int int32() {
+            int value = buffer.getInt(at);
+            at += Integer.BYTES;
+            return value;
+        }
+
+        long int64() {
+            long value = buffer.getLong(at);
+            at += Long.BYTES;
+            return value;
+        }
+
+        int count() {
+            int count = int32();
+            if (count < 0) {
+                throw new IndexOutOfBoundsException("negative count " + count + " at " + (at - Integer.BYTES));
+            }
+            return count;
+        }
+
+        void skipString() {
+            int length = count();
+            if (length > buffer.capacity() - at) {
+                throw new IndexOutOfBoundsException("string of " + length + " bytes at " + at + " past end of file");
+            }
+            at += length;
+        }
+
+        String string() {
+            byte[] utf8 = new byte[count()];
+            buffer.get(at, utf8);
+            at += utf8.length;
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.flamingock.flags.engine;
+
+/**
+ * MurmurHash3 (x86, 32-bit) over the UTF-16 code units of the user id, seeded with the hash of the
+ * flag name. Reads characters straight from the strings, so bucketing allocates nothing.
+ */
+final class Murmur3Bucketing implements BucketingAlgorithm {
+
+    static final int VERSION = 2;
+
+    static final Murmur3Bucketing INSTANCE = new Murmur3Bucketing();
+
+    private static final int C1 = 0xcc9e2d51;
+    private static final int C2 = 0x1b873593;
+
+    private Murmur3Bucketing() {
+    }
+
+    @Override
+    public int version() {
+        return VERSION;
+    }
+
+    @Override
+    public int seed(String flagName) {
+        return hash(flagName, 0);
+    }
+
+    @Override
+    public int bucket(String flagName, int seed, String userId) {
+        return Integer.remainderUnsigned(hash(userId, seed), BASIS_POINTS);
+    }
+
+    static int hash(CharSequence input, int seed) {
+        int h1 = seed;
+        int length = input.length();
+        for (int i = 1; i < length; i += 2) {
+            int k1 = input.charAt(i - 1) | (input.charAt(i) << 16);
+            h1 = mixH1(h1, mixK1(k1));
+        }
+        if ((length & 1) == 1) {
+            h1 ^= mixK1(input.charAt(length - 1));
+        }
+        return fmix(h1, 2 * length);
+    }
+
+    private static int mixK1(int k1) {
+        k1 *= C1;
+        k1 = Integer.rotateLeft(k1, 15);
+        return k1 * C2;
+    }
+
+    private static int mixH1(int h1, int k1) {
+        h1 ^= k1;
+        h1 = Integer.rotateLeft(h1, 13);
+        return h1 * 5 + 0xe6546b64;
+    }
+
+    private static int fmix(int h1, int length) {
+        h1 ^= length;
+        h1 ^= h1 >>> 16;
+        h1 *= 0x85ebca6b;
+        h1 ^= h1 >>> 13;
+        h1 *= 0xc2b2ae35;
+        return h1 ^ (h1 >>> 16);
+    }
+}
@@ -0,0 +1,102 @@
+package io.flamingock.flags.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Orders flags so that each comes after the flags it requires. This is how prerequisites are
+ * checked for cycles before they are stored, and the order in which a snapshot links them.
+ */
+public final class PrerequisiteGraph {
+
+    /**
+     * Flags in prerequisite order, and those that could not be ordered because they are on or
+     * depend on a cycle.
+     */
+    record Order(List<String> sorted, Set<String> cyclic) {
+    }
+
+    private PrerequisiteGraph() {
+    }
+
+    /**
+     * Returns every flag named in {@code prerequisites}, keys and values, each after all of its
+     * prerequisites. Names that are not keys have none.
+     *
+     * @throws IllegalArgumentException naming the flags on a cycle, e.g.
+     *                                  {@code prerequisite cycle: a -> b -> a}
+     */
+    public static List<String> topologicalOrder(Map<String, ? extends Collection<String>> prerequisites) {
+        Order order = sort(prerequisites);
+        if (!order.cyclic().isEmpty()) {
+            throw new IllegalArgumentException("prerequisite cycle: " + String.join(" -> ", cycle(prerequisites, order.cyclic())));
+        }
+        return order.sorted();
+    }
+
+    /**
+     * Kahn's algorithm: a flag is ready once all of its prerequisites are placed.
+     */
+    static Order sort(Map<String, ? extends Collection<String>> prerequisites) {
+        Map<String, Integer> waitingOn = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        Set<String> names = new LinkedHashSet<>();
+        for (Map.Entry<String, ? extends Collection<String>> entry : prerequisites.entrySet()) {
+            names.add(entry.getKey());
+            Set<String> distinct = new LinkedHashSet<>(entry.getValue());
+            waitingOn.put(entry.getKey(), distinct.size());
+            for (String prerequisite : distinct) {
+                names.add(prerequisite);
+                dependents.computeIfAbsent(prerequisite, k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+
+        ArrayDeque<String> ready = new ArrayDeque<>();
+        for (String name : names) {
+            if (waitingOn.getOrDefault(name, 0) == 0) {
+                ready.add(name);
+            }
+        }
+        List<String> sorted = new ArrayList<>(names.size());
+        while (!ready.isEmpty()) {
+            String name = ready.poll();
+            sorted.add(name);
+            for (String dependent : dependents.getOrDefault(name, List.of())) {
+                if (waitingOn.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        Set<String> cyclic = new LinkedHashSet<>(names);
+        sorted.forEach(cyclic::remove);
+        return new Order(sorted, cyclic);
+    }
+
+    /**
+     * Every flag left over has a prerequisite that is also left over, so following them from any
+     * one of these eventually comes back round.
+     */
+    private static List<String> cycle(Map<String, ? extends Collection<String>> prerequisites, Set<String> cyclic) {
+        List<String> path = new ArrayList<>();
+        String name = cyclic.iterator().next();
+        while (!path.contains(name)) {
+            path.add(name);
+            for (String prerequisite : prerequisites.get(name)) {
+                if (cyclic.contains(prerequisite)) {
+                    name = prerequisite;
+                    break;
+                }
+            }
+        }
+        List<String> cycle = new ArrayList<>(path.subList(path.indexOf(name), path.size()));
+        cycle.add(name);
+        return cycle;
+    }
+}
@@ -0,0 +1,9 @@
+package io.flamingock.flags.engine;
+
+import java.util.UUID;
+
+/**
+ * A targeting rule as stored and as sent to subscribers, before its operand is compiled.
+ */
+public record RuleDefinition(UUID id, String attribute, String operator, String value) {
+}
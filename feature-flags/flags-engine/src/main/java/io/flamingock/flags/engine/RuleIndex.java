@@ -0,0 +1,212 @@
+package io.flamingock.flags.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds the first rule, in insertion order, that matches a context. {@code equals} and {@code in}
+ * values are looked up in a hash map per attribute and {@code starts_with} prefixes in a trie, so
+ * allowlists with thousands of values cost one lookup per attribute. The remaining operators are
+ * scanned in order, but only up to the best indexed match. Flags with few rules skip the index and
+ * scan linearly, which is cheaper at that size.
+ */
+public final class RuleIndex {
+
+    static final int LINEAR_SCAN_LIMIT = 8;
+
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private final CompiledRule[] rules;
+    private final AttributeIndex[] indexed;
+    private final int[] residual;
+
+    private RuleIndex(CompiledRule[] rules, AttributeIndex[] indexed, int[] residual) {
+        this.rules = rules;
+        this.indexed = indexed;
+        this.residual = residual;
+    }
+
+    static RuleIndex build(List<CompiledRule> rules) {
+        CompiledRule[] ordered = rules.toArray(new CompiledRule[0]);
+        if (ordered.length <= LINEAR_SCAN_LIMIT) {
+            return new RuleIndex(ordered, null, null);
+        }
+        Map<String, AttributeIndex.Builder> byAttribute = new LinkedHashMap<>();
+        List<Integer> residual = new ArrayList<>();
+        for (int position = 0; position < ordered.length; position++) {
+            CompiledRule rule = ordered[position];
+            switch (rule.operator()) {
+                case EQUALS -> builder(byAttribute, rule).exact(rule.value(), position);
+                case IN -> {
+                    AttributeIndex.Builder builder = builder(byAttribute, rule);
+                    for (String member : RuleOperator.members(rule.value())) {
+                        builder.exact(member, position);
+                    }
+                }
+                case STARTS_WITH -> builder(byAttribute, rule).prefix(rule.value(), position);
+                default -> residual.add(position);
+            }
+        }
+        AttributeIndex[] indexed = byAttribute.values().stream()
+                .map(AttributeIndex.Builder::build)
+                .toArray(AttributeIndex[]::new);
+        return new RuleIndex(ordered, indexed, residual.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static AttributeIndex.Builder builder(Map<String, AttributeIndex.Builder> byAttribute, CompiledRule rule) {
+        return byAttribute.computeIfAbsent(rule.attribute(), AttributeIndex.Builder::new);
+    }
+
+    CompiledRule firstMatch(Map<String, String> attrs) {
+        if (indexed == null) {
+            for (CompiledRule rule : rules) {
+                if (rule.matches(attrs)) {
+                    return rule;
+                }
+            }
+            return null;
+        }
+        int best = NO_MATCH;
+        for (AttributeIndex index : indexed) {
+            String value = attrs.get(index.attribute);
+            if (value != null) {
+                best = Math.min(best, index.firstMatch(value));
+            }
+        }
+        for (int position : residual) {
+            if (position >= best) {
+                break;
+            }
+            if (rules[position].matches(attrs)) {
+                best = position;
+                break;
+            }
+        }
+        return best == NO_MATCH ? null : rules[best];
+    }
+
+    private static final class AttributeIndex {
+
+        private final String attribute;
+        private final Map<String, Integer> exact;
+        private final PrefixNode prefixes;
+
+        private AttributeIndex(String attribute, Map<String, Integer> exact, PrefixNode prefixes) {
+            this.attribute = attribute;
+            this.exact = exact;
+            this.prefixes = prefixes;
+        }
+
+        int firstMatch(String value) {
+            Integer position = exact.get(value);
+            int best = position != null ? position : NO_MATCH;
+            if (prefixes != null) {
+                best = Math.min(best, prefixes.firstMatch(value));
+            }
+            return best;
+        }
+
+        private static final class Builder {
+
+            private final String attribute;
+            private final Map<String, Integer> exact = new HashMap<>();
+            private PrefixNode.Builder prefixes;
+
+            Builder(String attribute) {
+                this.attribute = attribute;
+            }
+
+            void exact(String value, int position) {
+                exact.putIfAbsent(value, position);
+            }
+
+            void prefix(String prefix, int position) {
+                if (prefixes == null) {
+                    prefixes = new PrefixNode.Builder();
+                }
+                prefixes.insert(prefix, position);
+            }
+
+            AttributeIndex build() {
+                return new AttributeIndex(attribute, Map.copyOf(exact), prefixes != null ? prefixes.build() : null);
+            }
+        }
+    }
+
+    /**
+     * Trie node with children in sorted arrays, so walking it neither boxes characters nor allocates.
+     * {@code position} is the earliest rule whose prefix ends at this node.
+     */
+    private static final class PrefixNode {
+
+        private final char[] keys;
+        private final PrefixNode[] children;
+        private final int position;
+
+        private PrefixNode(char[] keys, PrefixNode[] children, int position) {
+            this.keys = keys;
+            this.children = children;
+            this.position = position;
+        }
+
+        int firstMatch(String value) {
+            PrefixNode node = this;
+            int best = position;
+            for (int i = 0; i < value.length(); i++) {
+                node = node.child(value.charAt(i));
+                if (node == null) {
+                    break;
+                }
+                best = Math.min(best, node.position);
+            }
+            return best;
+        }
+
+        private PrefixNode child(char c) {
+            int low = 0;
+            int high = keys.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char key = keys[mid];
+                if (key < c) {
+                    low = mid + 1;
+                } else if (key > c) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+
+        private static final class Builder {
+
+            private final TreeMap<Character, Builder> children = new TreeMap<>();
+            private int position = NO_MATCH;
+
+            void insert(String prefix, int position) {
+                Builder node = this;
+                for (int i = 0; i < prefix.length(); i++) {
+                    node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Builder());
+                }
+                node.position = Math.min(node.position, position);
+            }
+
+            PrefixNode build() {
+                char[] keys = new char[children.size()];
+                PrefixNode[] nodes = new PrefixNode[children.size()];
+                int i = 0;
+                for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+                    keys[i] = entry.getKey();
+                    nodes[i] = entry.getValue().build();
+                    i++;
+                }
+                return new PrefixNode(keys, nodes, position);
+            }
+        }
+    }
+}
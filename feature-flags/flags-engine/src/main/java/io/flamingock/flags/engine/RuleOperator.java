@@ -0,0 +1,255 @@
+package io.flamingock.flags.engine;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Targeting rule operators. Each one turns the rule's stored value into a predicate once, when the
+ * rule is compiled, so evaluation never re-parses the operand.
+ */
+public enum RuleOperator {
+
+    EQUALS("equals") {
+        @Override
+        Predicate<String> compile(String operand) {
+            return operand::equals;
+        }
+    },
+    CONTAINS("contains") {
+        @Override
+        Predicate<String> compile(String operand) {
+            return value -> value.contains(operand);
+        }
+    },
+    IN("in") {
+        @Override
+        Predicate<String> compile(String operand) {
+            Set<String> members = Set.copyOf(members(operand));
+            return members::contains;
+        }
+    },
+    STARTS_WITH("starts_with") {
+        @Override
+        Predicate<String> compile(String operand) {
+            return value -> value.startsWith(operand);
+        }
+    },
+    IN_SEGMENT("in_segment") {
+        @Override
+        Predicate<String> compile(String operand) {
+            throw new IllegalStateException("in_segment rules are compiled against a SegmentTable");
+        }
+
+        @Override
+        Predicate<String> compile(String operand, SegmentTable segments) {
+            if (operand.isBlank()) {
+                throw new IllegalArgumentException("segment name is required");
+            }
+            return segments.membership(operand);
+        }
+    },
+    MATCHES("matches") {
+        @Override
+        Predicate<String> compile(String operand) {
+            Pattern pattern = Pattern.compile(operand);
+            return value -> pattern.matcher(value).matches();
+        }
+    },
+    GT("gt") {
+        @Override
+        Predicate<String> compile(String operand) {
+            double bound = parseNumber(operand);
+            return value -> compareNumber(value, bound) > 0;
+        }
+    },
+    GTE("gte") {
+        @Override
+        Predicate<String> compile(String operand) {
+            double bound = parseNumber(operand);
+            return value -> compareNumber(value, bound) >= 0;
+        }
+    },
+    LT("lt") {
+        @Override
+        Predicate<String> compile(String operand) {
+            double bound = parseNumber(operand);
+            return value -> {
+                int cmp = compareNumber(value, bound);
+                return cmp < 0 && cmp != NOT_COMPARABLE;
+            };
+        }
+    },
+    LTE("lte") {
+        @Override
+        Predicate<String> compile(String operand) {
+            double bound = parseNumber(operand);
+            return value -> {
+                int cmp = compareNumber(value, bound);
+                return cmp <= 0 && cmp != NOT_COMPARABLE;
+            };
+        }
+    },
+    SEMVER_EQ("semver_eq") {
+        @Override
+        Predicate<String> compile(String operand) {
+            SemanticVersion version = SemanticVersion.parse(operand);
+            return value -> version.compare(value) == 0;
+        }
+    },
+    SEMVER_GT("semver_gt") {
+        @Override
+        Predicate<String> compile(String operand) {
+            SemanticVersion version = SemanticVersion.parse(operand);
+            return value -> version.compare(value) > 0;
+        }
+    },
+    SEMVER_GTE("semver_gte") {
+        @Override
+        Predicate<String> compile(String operand) {
+            SemanticVersion version = SemanticVersion.parse(operand);
+            return value -> version.compare(value) >= 0;
+        }
+    },
+    SEMVER_LT("semver_lt") {
+        @Override
+        Predicate<String> compile(String operand) {
+            SemanticVersion version = SemanticVersion.parse(operand);
+            return value -> {
+                int cmp = version.compare(value);
+                return cmp < 0 && cmp != SemanticVersion.INVALID;
+            };
+        }
+    },
+    SEMVER_LTE("semver_lte") {
+        @Override
+        Predicate<String> compile(String operand) {
+            SemanticVersion version = SemanticVersion.parse(operand);
+            return value -> {
+                int cmp = version.compare(value);
+                return cmp <= 0 && cmp != SemanticVersion.INVALID;
+            };
+        }
+    };
+
+    private static final int NOT_COMPARABLE = Integer.MIN_VALUE;
+
+    /**
+     * Integers with at most this many digits fit a long and convert to a double exactly.
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private final String code;
+
+    RuleOperator(String code) {
+        this.code = code;
+    }
+
+    public String code() {
+        return code;
+    }
+
+    abstract Predicate<String> compile(String operand);
+
+    Predicate<String> compile(String operand, SegmentTable segments) {
+        return compile(operand);
+    }
+
+    public static RuleOperator fromCode(String code) {
+        for (RuleOperator operator : values()) {
+            if (operator.code.equals(code)) {
+                return operator;
+            }
+        }
+        throw new IllegalArgumentException("unknown operator: " + code);
+    }
+
+    static List<String> members(String operand) {
+        return Arrays.asList(operand.split(","));
+    }
+
+    private static double parseNumber(String operand) {
+        double number = parseFinite(operand);
+        if (Double.isNaN(number)) {
+            throw new IllegalArgumentException("not a finite number: " + operand);
+        }
+        return number;
+    }
+
+    private static int compareNumber(String value, double bound) {
+        double number = parseFinite(value);
+        if (Double.isNaN(number)) {
+            return NOT_COMPARABLE;
+        }
+        return number < bound ? -1 : number > bound ? 1 : 0;
+    }
+
+    /**
+     * Parses a plain decimal such as {@code 18}, {@code -2.5} or {@code 1e3}, allowing surrounding
+     * whitespace. Anything else, including {@code NaN}, {@code Infinity}, hexadecimal and values
+     * that overflow a double, gives NaN. Attribute values are checked before they reach
+     * {@link Double#parseDouble}, so a non-numeric attribute costs a scan rather than an exception,
+     * and short integers skip it altogether.
+     */
+    static double parseFinite(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int i = start;
+        boolean negative = false;
+        if (i < end && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+        int digits = 0;
+        long integer = 0;
+        while (i < end && isDigit(value.charAt(i))) {
+            integer = integer * 10 + (value.charAt(i) - '0');
+            digits++;
+            i++;
+        }
+        if (i == end && digits > 0 && digits <= MAX_EXACT_DIGITS) {
+            return negative ? -integer : integer;
+        }
+        if (i < end && value.charAt(i) == '.') {
+            i++;
+            while (i < end && isDigit(value.charAt(i))) {
+                digits++;
+                i++;
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (i < end && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < end && isDigit(value.charAt(i))) {
+                exponentDigits++;
+                i++;
+            }
+            if (exponentDigits == 0) {
+                return Double.NaN;
+            }
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+        double number = Double.parseDouble(value.substring(start, end));
+        return Double.isFinite(number) ? number : Double.NaN;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,92 @@
+package io.flamingock.flags.engine;
+
+import java.util.Arrays;
+
+/**
+ * A named set of ids, kept as a sorted array of 64-bit id hashes: 8 bytes per member and a binary
+ * search per lookup. Ids are only stored hashed, so a segment can answer "is this id a member" but
+ * cannot list its members.
+ */
+public final class Segment {
+
+    private final String name;
+    private final long[] members;
+
+    private Segment(String name, long[] members) {
+        this.name = name;
+        this.members = members;
+    }
+
+    public static Segment of(String name, long[] memberHashes) {
+        return new Segment(name, sortedDistinct(memberHashes.clone(), memberHashes.length));
+    }
+
+    public static Segment compile(SegmentDefinition definition) {
+        return of(definition.name(), definition.members());
+    }
+
+    /**
+     * FNV-1a over the id's chars followed by the MurmurHash3 finalizer. Stable across processes and
+     * versions: stored members and client-side lookups depend on it.
+     */
+    public static long hash(String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash = (hash ^ id.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int size() {
+        return members.length;
+    }
+
+    public boolean contains(String id) {
+        return Arrays.binarySearch(members, hash(id)) >= 0;
+    }
+
+    public SegmentDefinition definition() {
+        return new SegmentDefinition(name, members.clone());
+    }
+
+    /**
+     * Returns a copy with {@code added} hashes inserted and {@code removed} hashes taken out; a hash
+     * in both ends up removed.
+     */
+    public Segment with(long[] added, long[] removed) {
+        long[] merged = Arrays.copyOf(members, members.length + added.length);
+        System.arraycopy(added, 0, merged, members.length, added.length);
+        merged = sortedDistinct(merged, merged.length);
+        if (removed.length == 0) {
+            return new Segment(name, merged);
+        }
+        long[] gone = sortedDistinct(removed.clone(), removed.length);
+        int kept = 0;
+        for (long member : merged) {
+            if (Arrays.binarySearch(gone, member) < 0) {
+                merged[kept++] = member;
+            }
+        }
+        return new Segment(name, Arrays.copyOf(merged, kept));
+    }
+
+    private static long[] sortedDistinct(long[] values, int length) {
+        Arrays.sort(values, 0, length);
+        int distinct = 0;
+        for (int i = 0; i < length; i++) {
+            if (distinct == 0 || values[i] != values[distinct - 1]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return distinct == values.length ? values : Arrays.copyOf(values, distinct);
+    }
+}
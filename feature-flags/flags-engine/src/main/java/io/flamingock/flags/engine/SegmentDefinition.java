@@ -0,0 +1,7 @@
+package io.flamingock.flags.engine;
+
+/**
+ * A segment as sent to clients: its name and the sorted hashes of its members.
+ */
+public record SegmentDefinition(String name, long[] members) {
+}
@@ -0,0 +1,84 @@
+package io.flamingock.flags.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * The segments that {@code in_segment} rules look up. A compiled rule holds the segment's slot
+ * rather than the segment itself, so a segment can be replaced, grown or shrunk without
+ * recompiling any flag. A rule naming a segment that does not exist never matches.
+ */
+public final class SegmentTable {
+
+    private final Map<String, AtomicReference<Segment>> slots = new ConcurrentHashMap<>();
+
+    public static SegmentTable of(Collection<SegmentDefinition> definitions) {
+        SegmentTable table = new SegmentTable();
+        for (SegmentDefinition definition : definitions) {
+            table.put(Segment.compile(definition));
+        }
+        return table;
+    }
+
+    public Segment get(String name) {
+        AtomicReference<Segment> slot = slots.get(name);
+        return slot != null ? slot.get() : null;
+    }
+
+    public void put(Segment segment) {
+        slot(segment.name()).set(segment);
+    }
+
+    public void remove(String name) {
+        AtomicReference<Segment> slot = slots.get(name);
+        if (slot != null) {
+            slot.set(null);
+        }
+    }
+
+    /**
+     * Makes {@code segments} the full contents of the table.
+     */
+    public void replaceAll(Collection<Segment> segments) {
+        Set<String> names = new HashSet<>();
+        for (Segment segment : segments) {
+            put(segment);
+            names.add(segment.name());
+        }
+        for (String name : slots.keySet()) {
+            if (!names.contains(name)) {
+                remove(name);
+            }
+        }
+    }
+
+    public List<SegmentDefinition> definitions() {
+        List<SegmentDefinition> definitions = new ArrayList<>();
+        for (AtomicReference<Segment> slot : slots.values()) {
+            Segment segment = slot.get();
+            if (segment != null) {
+                definitions.add(segment.definition());
+            }
+        }
+        return definitions;
+    }
+
+    Predicate<String> membership(String name) {
+        AtomicReference<Segment> slot = slot(name);
+        return value -> {
+            Segment segment = slot.get();
+            return segment != null && segment.contains(value);
+        };
+    }
+
+    private AtomicReference<Segment> slot(String name) {
+        return slots.computeIfAbsent(name, k -> new AtomicReference<>());
+    }
+}
@@ -0,0 +1,178 @@
+package io.flamingock.flags.engine;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@code major.minor.patch[-prerelease][+build]} rule operand. Minor and patch default to zero and
+ * a leading {@code v} is ignored. Pre-release tags sort before the release and compare as in SemVer
+ * 2.0.0, section 11: identifier by identifier, numeric ones numerically and below alphanumeric
+ * ones, which compare in ASCII order; a tag that is a prefix of another is lower.
+ * Attribute values are compared by scanning the string in place, without parsing it into an object.
+ */
+final class SemanticVersion {
+
+    static final int INVALID = Integer.MIN_VALUE;
+
+    private static final Pattern FORMAT =
+            Pattern.compile("[vV]?(\\d+)(?:\\.(\\d+))?(?:\\.(\\d+))?(?:-([0-9A-Za-z.-]+))?(?:\\+[0-9A-Za-z.-]+)?");
+
+    private final int major;
+    private final int minor;
+    private final int patch;
+    private final String preRelease;
+
+    private SemanticVersion(int major, int minor, int patch, String preRelease) {
+        this.major = major;
+        this.minor = minor;
+        this.patch = patch;
+        this.preRelease = preRelease;
+    }
+
+    static SemanticVersion parse(String operand) {
+        Matcher matcher = FORMAT.matcher(operand);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("not a semantic version: " + operand);
+        }
+        try {
+            return new SemanticVersion(
+                    Integer.parseInt(matcher.group(1)),
+                    matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 0,
+                    matcher.group(3) != null ? Integer.parseInt(matcher.group(3)) : 0,
+                    matcher.group(4));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("version component out of range: " + operand);
+        }
+    }
+
+    /**
+     * Returns a negative number, zero or a positive number as {@code candidate} is lower than, equal
+     * to or higher than this version, or {@link #INVALID} when it is not a version.
+     */
+    int compare(String candidate) {
+        int length = candidate.length();
+        int i = length > 0 && (candidate.charAt(0) == 'v' || candidate.charAt(0) == 'V') ? 1 : 0;
+        int result = 0;
+        for (int k = 0; k < 3; k++) {
+            int actual = 0;
+            if (k == 0 || (i < length && candidate.charAt(i) == '.')) {
+                if (k > 0) {
+                    i++;
+                }
+                int start = i;
+                long value = 0;
+                while (i < length && candidate.charAt(i) >= '0' && candidate.charAt(i) <= '9') {
+                    value = value * 10 + (candidate.charAt(i) - '0');
+                    if (value > Integer.MAX_VALUE) {
+                        return INVALID;
+                    }
+                    i++;
+                }
+                if (i == start) {
+                    return INVALID;
+                }
+                actual = (int) value;
+            }
+            if (result == 0) {
+                result = Integer.compare(actual, k == 0 ? major : k == 1 ? minor : patch);
+            }
+        }
+        int preStart = -1;
+        int preEnd = -1;
+        if (i < length && candidate.charAt(i) == '-') {
+            preStart = ++i;
+            while (i < length && candidate.charAt(i) != '+') {
+                i++;
+            }
+            preEnd = i;
+            if (preStart == preEnd) {
+                return INVALID;
+            }
+        }
+        if (i < length && candidate.charAt(i) == '+') {
+            i = length;
+        }
+        if (i != length) {
+            return INVALID;
+        }
+        if (result != 0) {
+            return result;
+        }
+        if (preStart < 0) {
+            return preRelease == null ? 0 : 1;
+        }
+        if (preRelease == null) {
+            return -1;
+        }
+        return comparePreRelease(candidate, preStart, preEnd);
+    }
+
+    private int comparePreRelease(String candidate, int start, int end) {
+        int i = start;
+        int j = 0;
+        while (true) {
+            int candidateEnd = i;
+            while (candidateEnd < end && candidate.charAt(candidateEnd) != '.') {
+                candidateEnd++;
+            }
+            int operandEnd = preRelease.indexOf('.', j);
+            if (operandEnd < 0) {
+                operandEnd = preRelease.length();
+            }
+            int cmp = compareIdentifier(candidate, i, candidateEnd, preRelease, j, operandEnd);
+            if (cmp != 0) {
+                return cmp;
+            }
+            boolean candidateHasMore = candidateEnd < end;
+            boolean operandHasMore = operandEnd < preRelease.length();
+            if (!candidateHasMore || !operandHasMore) {
+                return Boolean.compare(candidateHasMore, operandHasMore);
+            }
+            i = candidateEnd + 1;
+            j = operandEnd + 1;
+        }
+    }
+
+    /**
+     * Compares {@code a[aStart, aEnd)} with {@code b[bStart, bEnd)}. Numeric identifiers are compared
+     * by digit count, ignoring leading zeros, then digit by digit, so any length compares correctly.
+     */
+    private static int compareIdentifier(String a, int aStart, int aEnd, String b, int bStart, int bEnd) {
+        boolean aNumeric = isNumeric(a, aStart, aEnd);
+        boolean bNumeric = isNumeric(b, bStart, bEnd);
+        if (aNumeric != bNumeric) {
+            return aNumeric ? -1 : 1;
+        }
+        if (aNumeric) {
+            while (aStart < aEnd - 1 && a.charAt(aStart) == '0') {
+                aStart++;
+            }
+            while (bStart < bEnd - 1 && b.charAt(bStart) == '0') {
+                bStart++;
+            }
+            if (aEnd - aStart != bEnd - bStart) {
+                return Integer.compare(aEnd - aStart, bEnd - bStart);
+            }
+        }
+        int length = Math.min(aEnd - aStart, bEnd - bStart);
+        for (int k = 0; k < length; k++) {
+            int cmp = Character.compare(a.charAt(aStart + k), b.charAt(bStart + k));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(aEnd - aStart, bEnd - bStart);
+    }
+
+    private static boolean isNumeric(String value, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int k = start; k < end; k++) {
+            if (value.charAt(k) < '0' || value.charAt(k) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+package io.flamingock.flags.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The original algorithm: SHA-256 of {@code flagName:userId}, taken modulo 100. Kept only so flags
+ * created before version 2 keep their rollout populations; its buckets are whole percentages.
+ */
+final class Sha256Bucketing implements BucketingAlgorithm {
+
+    static final int VERSION = 1;
+
+    static final Sha256Bucketing INSTANCE = new Sha256Bucketing();
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private Sha256Bucketing() {
+    }
+
+    @Override
+    public int version() {
+        return VERSION;
+    }
+
+    @Override
+    public int seed(String flagName) {
+        return 0;
+    }
+
+    @Override
+    public int bucket(String flagName, int seed, String userId) {
+        byte[] hash = DIGEST.get().digest((flagName + ":" + userId).getBytes(StandardCharsets.UTF_8));
+        int head = (hash[0] & 0xff) << 24 | (hash[1] & 0xff) << 16 | (hash[2] & 0xff) << 8 | (hash[3] & 0xff);
+        return Math.floorMod(head, 100) * 100;
+    }
+}
@@ -0,0 +1,10 @@
+package io.flamingock.flags.engine;
+
+import java.util.List;
+
+public record SnapshotDefinition(long version, List<FlagDefinition> flags, List<SegmentDefinition> segments) {
+
+    public SnapshotDefinition(long version, List<FlagDefinition> flags) {
+        this(version, flags, List.of());
+    }
+}
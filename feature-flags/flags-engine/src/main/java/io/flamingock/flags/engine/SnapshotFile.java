@@ -0,0 +1,137 @@
+package io.flamingock.flags.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * A snapshot as a flat binary file that other processes on the host map into memory and evaluate
+ * from, see {@link MappedSnapshot}. Files are replaced atomically, so a process that has the old
+ * file mapped keeps reading a consistent copy until it maps the new one.
+ * <p>
+ * Layout, big-endian, offsets from the start of the file:
+ * <pre>
+ * header    int magic, int format, long version, int flagCount, int indexSlots,
+ *           int segmentsOffset, int segmentCount
+ * index     indexSlots x int: offset of a flag record, 0 for an empty slot; open addressing on
+ *           String.hashCode() of the name, linear probing
+ * flag      int nameHash, string name, byte enabled, int rolloutBasisPoints, int bucketingVersion,
+ *           int ruleCount, ruleCount x (byte hasId, long idMsb, long idLsb, string attribute,
+ *           string operator, string value), int prerequisiteCount, prerequisiteCount x string
+ * segment   string name, int memberCount, memberCount x long, sorted
+ * string    int byteLength, UTF-8 bytes
+ * </pre>
+ * Format 1 files, written before prerequisites, have no prerequisite section and are still read.
+ */
+public final class SnapshotFile {
+
+    static final int MAGIC = 0x464C4753; // "FLGS"
+    static final int FORMAT = 2;
+    static final int HEADER_BYTES = 32;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes {@code definition} to {@code file}, replacing any previous snapshot atomically.
+     */
+    public static void write(SnapshotDefinition definition, Path file) throws IOException {
+        List<FlagDefinition> flags = definition.flags();
+        List<SegmentDefinition> segments = definition.segments() != null ? definition.segments() : List.of();
+        int slots = Integer.highestOneBit(Math.max(2, flags.size() * 2) - 1) << 1;
+        int bodyStart = HEADER_BYTES + slots * Integer.BYTES;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bytes);
+        int[] index = new int[slots];
+        for (FlagDefinition flag : flags) {
+            int hash = flag.name().hashCode();
+            int slot = hash & (slots - 1);
+            while (index[slot] != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            index[slot] = bodyStart + body.size();
+            body.writeInt(hash);
+            writeString(body, flag.name());
+            body.writeBoolean(flag.enabled());
+            body.writeInt(flag.rolloutBasisPoints());
+            body.writeInt(flag.bucketingVersion());
+            body.writeInt(flag.rules().size());
+            for (RuleDefinition rule : flag.rules()) {
+                UUID id = rule.id();
+                body.writeBoolean(id != null);
+                body.writeLong(id != null ? id.getMostSignificantBits() : 0);
+                body.writeLong(id != null ? id.getLeastSignificantBits() : 0);
+                writeString(body, rule.attribute());
+                writeString(body, rule.operator());
+                writeString(body, rule.value());
+            }
+            body.writeInt(flag.prerequisites().size());
+            for (String prerequisite : flag.prerequisites()) {
+                writeString(body, prerequisite);
+            }
+        }
+        int segmentsOffset = bodyStart + body.size();
+        for (SegmentDefinition segment : segments) {
+            writeString(body, segment.name());
+            body.writeInt(segment.members().length);
+            for (long member : segment.members()) {
+                body.writeLong(member);
+            }
+        }
+        body.flush();
+
+        ByteBuffer head = ByteBuffer.allocate(bodyStart);
+        head.putInt(MAGIC).putInt(FORMAT).putLong(definition.version()).putInt(flags.size()).putInt(slots)
+                .putInt(segmentsOffset).putInt(segments.size());
+        for (int offset : index) {
+            head.putInt(offset);
+        }
+        head.flip();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (head.hasRemaining()) {
+                channel.write(head);
+            }
+            ByteBuffer rest = ByteBuffer.wrap(bytes.toByteArray());
+            while (rest.hasRemaining()) {
+                channel.write(rest);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Maps {@code file}, failing with an {@link IOException} if any flag record is truncated or has
+     * an unknown bucketing version. Flags are compiled the first time they are looked up; rules that
+     * no longer compile are reported to {@code onInvalidRule} and left out.
+     */
+    public static MappedSnapshot open(Path file, BiConsumer<RuleDefinition, IllegalArgumentException> onInvalidRule)
+            throws IOException {
+        return MappedSnapshot.map(file, onInvalidRule);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+}
@@ -0,0 +1,76 @@
+package io.flamingock.flags.engine.conformance;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.flamingock.flags.engine.EvalResult;
+import io.flamingock.flags.engine.FlagDefinition;
+import io.flamingock.flags.engine.SegmentDefinition;
+import io.flamingock.flags.engine.SnapshotDefinition;
+import org.junit.jupiter.params.provider.Arguments;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Flags and expected results that every evaluator must reproduce exactly, down to the matched rule,
+ * bucket and explanation. Both the server and the embedded client run these cases, so any drift
+ * between them fails a build.
+ */
+public final class ConformanceSuite {
+
+    public record Case(String flag, String userId, Map<String, String> attributes, boolean enabled,
+                       EvalResult.Reason reason, UUID ruleId, Integer bucket, String prerequisite,
+                       String explanation) {
+
+        public EvalResult expected() {
+            return new EvalResult(enabled, reason, ruleId, bucket != null ? bucket : EvalResult.NO_BUCKET, prerequisite,
+                    null);
+        }
+
+        public EvalResult explained() {
+            return new EvalResult(enabled, reason, ruleId, bucket != null ? bucket : EvalResult.NO_BUCKET, prerequisite,
+                    explanation);
+        }
+
+        @Override
+        public String toString() {
+            return flag + " / " + userId + " " + attributes;
+        }
+    }
+
+    private record Fixture(List<FlagDefinition> flags, List<SegmentDefinition> segments, List<Case> cases) {
+    }
+
+    private static final Fixture FIXTURE = load();
+
+    private ConformanceSuite() {
+    }
+
+    public static List<FlagDefinition> flags() {
+        return FIXTURE.flags();
+    }
+
+    public static List<SegmentDefinition> segments() {
+        return FIXTURE.segments();
+    }
+
+    public static SnapshotDefinition snapshot() {
+        return new SnapshotDefinition(1, FIXTURE.flags(), FIXTURE.segments());
+    }
+
+    public static Stream<Arguments> cases() {
+        return FIXTURE.cases().stream().map(Arguments::of);
+    }
+
+    private static Fixture load() {
+        try (InputStream in = ConformanceSuite.class.getResourceAsStream("/conformance/cases.json")) {
+            return new ObjectMapper().readValue(in, Fixture.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
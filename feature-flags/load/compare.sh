@@ -0,0 +1,26 @@
+#!/usr/bin/env bash
+# Runs load/evaluate.js against the platform-thread app (port 8080) and the virtual-thread app
+# (port 8082) one after the other, and prints throughput, tail latency and error rate for both.
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+docker compose --profile virtual-threads up --build -d
+until curl -sf localhost:8080/actuator/health/readiness >/dev/null && curl -sf localhost:8082/actuator/health/readiness >/dev/null; do
+  sleep 2
+done
+
+for target in platform:8080 virtual:8082; do
+  name=${target%%:*}
+  port=${target##*:}
+  docker run --rm -i --network host -v "$PWD/load:/load" grafana/k6 run \
+    -e BASE_URL="http://localhost:$port" --summary-export "/load/results-$name.json" - < load/evaluate.js >/dev/null
+done
+
+printf '%-10s %10s %10s %10s %10s %8s\n' threads req/s p50_ms p95_ms p99_ms errors
+for name in platform virtual; do
+  jq -r --arg name "$name" '[$name,
+      (.metrics.http_reqs.rate | floor),
+      .metrics.http_req_duration["p(50)"], .metrics.http_req_duration["p(95)"], .metrics.http_req_duration["p(99)"],
+      .metrics.http_req_failed.value] | @tsv' "load/results-$name.json" |
+    awk -F'\t' '{ printf "%-10s %10d %10.1f %10.1f %10.1f %7.2f%%\n", $1, $2, $3, $4, $5, $6 * 100 }'
+done
@@ -0,0 +1,42 @@
+// Bursty traffic: mostly in-memory evaluations, with one request in five reading rules from Postgres.
+//   k6 run -e BASE_URL=http://localhost:8080 load/evaluate.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const FLAG = 'load-test';
+const PEAK_RATE = Number(__ENV.PEAK_RATE || 3000);
+
+export const options = {
+  scenarios: {
+    burst: {
+      executor: 'ramping-arrival-rate',
+      startRate: 100,
+      timeUnit: '1s',
+      preAllocatedVUs: 500,
+      maxVUs: 5000,
+      stages: [
+        { target: PEAK_RATE, duration: '20s' },
+        { target: PEAK_RATE, duration: '60s' },
+        { target: 100, duration: '10s' },
+      ],
+    },
+  },
+  summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+export function setup() {
+  const json = { headers: { 'Content-Type': 'application/json' } };
+  http.post(`${BASE_URL}/flags`, JSON.stringify({ name: FLAG, description: 'load test' }), json);
+  http.put(`${BASE_URL}/flags/${FLAG}`, JSON.stringify({ enabled: true, rolloutPercentage: 50 }), json);
+  http.post(`${BASE_URL}/flags/${FLAG}/rules`,
+    JSON.stringify({ attribute: 'plan', operator: 'equals', value: 'pro' }), json);
+}
+
+export default function () {
+  const userId = `user-${Math.floor(Math.random() * 100000)}`;
+  const res = Math.random() < 0.8
+    ? http.get(`${BASE_URL}/flags/evaluate/${FLAG}?userId=${userId}&plan=free`, { tags: { name: 'evaluate' } })
+    : http.get(`${BASE_URL}/flags/${FLAG}/rules`, { tags: { name: 'rules' } });
+  check(res, { 'status 200': (r) => r.status === 200 });
+}
@@ -0,0 +1,34 @@
+#!/usr/bin/env bash
+# Generates FLAGS flags with RULES_PER_FLAG rules each (default 20,000 x 50 = 1M rules), imports
+# them into the app on BASE_URL, exports them back, and prints rows per second for both.
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+BASE_URL=${BASE_URL:-http://localhost:8080}
+FLAGS=${FLAGS:-20000}
+RULES_PER_FLAG=${RULES_PER_FLAG:-50}
+file=load/import-$FLAGS-$RULES_PER_FLAG.ndjson
+
+if [ ! -f "$file" ]; then
+  awk -v flags="$FLAGS" -v rules="$RULES_PER_FLAG" 'BEGIN {
+    for (f = 0; f < flags; f++) {
+      printf "{\"name\":\"import-%06d\",\"enabled\":true,\"rolloutBasisPoints\":%d,\"rules\":[", f, (f * 37) % 10001
+      for (r = 0; r < rules; r++) {
+        printf "%s{\"attribute\":\"customer\",\"operator\":\"equals\",\"value\":\"customer-%d-%d\"}", (r ? "," : ""), f, r
+      }
+      print "]}"
+    }
+  }' > "$file"
+fi
+
+rows=$((FLAGS * RULES_PER_FLAG))
+start=$(date +%s.%N)
+curl -sf -X POST "$BASE_URL/flags/import" -H "Content-Type: application/x-ndjson" --data-binary "@$file"
+echo
+end=$(date +%s.%N)
+awk -v rows="$rows" -v s="$start" -v e="$end" 'BEGIN { printf "import: %d rules in %.1f s (%d rules/s)\n", rows, e - s, rows / (e - s) }'
+
+start=$(date +%s.%N)
+lines=$(curl -sf "$BASE_URL/flags/export" | wc -l)
+end=$(date +%s.%N)
+awk -v lines="$lines" -v rows="$rows" -v s="$start" -v e="$end" 'BEGIN { printf "export: %d flags in %.1f s (%d rules/s)\n", lines, e - s, rows / (e - s) }'
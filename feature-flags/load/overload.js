@@ -0,0 +1,50 @@
+// Drives GET /flags/evaluate past what the app can serve and keeps it there.
+//   k6 run -e BASE_URL=http://localhost:8080 -e PEAK_RATE=40000 load/overload.js
+// 503s from admission control are expected; what matters is the latency of the answered requests.
+import http from 'k6/http';
+import { check } from 'k6';
+import { Counter, Rate, Trend } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const FLAG = 'overload-test';
+const PEAK_RATE = Number(__ENV.PEAK_RATE || 40000);
+
+const answered = new Counter('answered');
+const answeredDuration = new Trend('answered_duration', true);
+const rejected = new Rate('rejected');
+
+http.setResponseCallback(http.expectedStatuses(200, 503));
+
+export const options = {
+  scenarios: {
+    overload: {
+      executor: 'ramping-arrival-rate',
+      startRate: 1000,
+      timeUnit: '1s',
+      preAllocatedVUs: 2000,
+      maxVUs: 10000,
+      stages: [
+        { target: PEAK_RATE, duration: '15s' },
+        { target: PEAK_RATE, duration: '60s' },
+      ],
+    },
+  },
+  summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+export function setup() {
+  const json = { headers: { 'Content-Type': 'application/json' } };
+  http.post(`${BASE_URL}/flags`, JSON.stringify({ name: FLAG, description: 'overload test' }), json);
+  http.put(`${BASE_URL}/flags/${FLAG}`, JSON.stringify({ enabled: true, rolloutPercentage: 50 }), json);
+}
+
+export default function () {
+  const userId = `user-${Math.floor(Math.random() * 100000)}`;
+  const res = http.get(`${BASE_URL}/flags/evaluate/${FLAG}?userId=${userId}`, { timeout: '10s' });
+  rejected.add(res.status === 503);
+  if (res.status === 200) {
+    answered.add(1);
+    answeredDuration.add(res.timings.duration);
+  }
+  check(res, { 'answered or shed': (r) => r.status === 200 || r.status === 503 });
+}
@@ -0,0 +1,26 @@
+#!/usr/bin/env bash
+# Runs load/overload.js against the app twice, without and with admission control, on a container
+# capped at APP_CPUS cores (default 2) so that k6 can push it past saturation. Prints the rate and
+# latency of answered requests, and the share turned away with 503.
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+for admission in false true; do
+  FLAGS_ADMISSION_ENABLED=$admission docker compose up --build -d db app
+  docker update --cpus "${APP_CPUS:-2}" "$(docker compose ps -q app)" >/dev/null
+  until curl -sf localhost:8080/actuator/health/readiness >/dev/null; do
+    sleep 2
+  done
+  docker run --rm -i --network host -v "$PWD/load:/load" grafana/k6 run \
+    -e BASE_URL=http://localhost:8080 --summary-export "/load/results-overload-$admission.json" - < load/overload.js >/dev/null
+  curl -s localhost:8080/actuator/metrics/flags.admission.limit | jq -r '"  final limit: \(.measurements[0].value)"' || true
+done
+
+printf '%-10s %12s %10s %10s %10s %10s\n' admission answered/s p50_ms p99_ms max_ms rejected
+for admission in false true; do
+  jq -r --arg admission "$admission" '[$admission,
+      (.metrics.answered.rate // 0 | floor),
+      .metrics.answered_duration["p(50)"], .metrics.answered_duration["p(99)"], .metrics.answered_duration.max,
+      .metrics.rejected.value] | @tsv' "load/results-overload-$admission.json" |
+    awk -F'\t' '{ printf "%-10s %12d %10.1f %10.1f %10.1f %9.2f%%\n", $1, $2, $3, $4, $5, $6 * 100 }'
+done
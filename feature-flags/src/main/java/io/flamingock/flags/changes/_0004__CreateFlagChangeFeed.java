@@ -0,0 +1,64 @@
+package io.flamingock.flags.changes;
+
+import io.flamingock.api.annotations.Apply;
+import io.flamingock.api.annotations.Change;
+import io.flamingock.api.annotations.Rollback;
+import io.flamingock.api.annotations.TargetSystem;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+@TargetSystem(id = "postgres-flags")
+@Change(id = "create-flag-change-feed", author = "dev")
+public class _0004__CreateFlagChangeFeed {
+
+    @Apply
+    public void apply(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS flag_changes (
+                        version    BIGSERIAL PRIMARY KEY,
+                        flag_name  VARCHAR(255) NOT NULL,
+                        txid       BIGINT NOT NULL DEFAULT pg_current_xact_id()::text::bigint,
+                        changed_at TIMESTAMPTZ NOT NULL DEFAULT clock_timestamp()
+                    )
+                    """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_flag_changes_txid ON flag_changes(txid)");
+            stmt.execute("""
+                    CREATE OR REPLACE FUNCTION record_flag_change() RETURNS trigger AS $$
+                    DECLARE
+                        changed VARCHAR(255);
+                    BEGIN
+                        IF TG_TABLE_NAME = 'feature_flags' THEN
+                            IF TG_OP = 'DELETE' THEN changed := OLD.name; ELSE changed := NEW.name; END IF;
+                        ELSE
+                            IF TG_OP = 'DELETE' THEN changed := OLD.flag_name; ELSE changed := NEW.flag_name; END IF;
+                        END IF;
+                        INSERT INTO flag_changes(flag_name) VALUES (changed);
+                        RETURN NULL;
+                    END;
+                    $$ LANGUAGE plpgsql
+                    """);
+            stmt.execute("""
+                    CREATE OR REPLACE TRIGGER trg_feature_flags_change
+                        AFTER INSERT OR UPDATE OR DELETE ON feature_flags
+                        FOR EACH ROW EXECUTE FUNCTION record_flag_change()
+                    """);
+            stmt.execute("""
+                    CREATE OR REPLACE TRIGGER trg_targeting_rules_change
+                        AFTER INSERT OR UPDATE OR DELETE ON targeting_rules
+                        FOR EACH ROW EXECUTE FUNCTION record_flag_change()
+                    """);
+        }
+    }
+
+    @Rollback
+    public void rollback(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TRIGGER IF EXISTS trg_targeting_rules_change ON targeting_rules");
+            stmt.execute("DROP TRIGGER IF EXISTS trg_feature_flags_change ON feature_flags");
+            stmt.execute("DROP FUNCTION IF EXISTS record_flag_change()");
+            stmt.execute("DROP TABLE IF EXISTS flag_changes");
+        }
+    }
+}
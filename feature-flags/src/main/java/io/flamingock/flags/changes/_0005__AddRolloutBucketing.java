@@ -0,0 +1,38 @@
+package io.flamingock.flags.changes;
+
+import io.flamingock.api.annotations.Apply;
+import io.flamingock.api.annotations.Change;
+import io.flamingock.api.annotations.Rollback;
+import io.flamingock.api.annotations.TargetSystem;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Existing flags keep bucketing version 1 (SHA-256, whole percentages) so nobody already in a
+ * rollout is reshuffled; rows inserted afterwards default to version 2.
+ */
+@TargetSystem(id = "postgres-flags")
+@Change(id = "add-rollout-bucketing", author = "dev")
+public class _0005__AddRolloutBucketing {
+
+    @Apply
+    public void apply(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE feature_flags ADD COLUMN IF NOT EXISTS bucketing_version INT NOT NULL DEFAULT 1");
+            stmt.execute("ALTER TABLE feature_flags ALTER COLUMN bucketing_version SET DEFAULT 2");
+            stmt.execute("ALTER TABLE feature_flags ADD COLUMN IF NOT EXISTS rollout_basis_points INT");
+            stmt.execute("UPDATE feature_flags SET rollout_basis_points = COALESCE(rollout_percentage, 100) * 100 WHERE rollout_basis_points IS NULL");
+            stmt.execute("ALTER TABLE feature_flags ALTER COLUMN rollout_basis_points SET DEFAULT 10000");
+            stmt.execute("ALTER TABLE feature_flags ALTER COLUMN rollout_basis_points SET NOT NULL");
+        }
+    }
+
+    @Rollback
+    public void rollback(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE feature_flags DROP COLUMN IF EXISTS rollout_basis_points");
+            stmt.execute("ALTER TABLE feature_flags DROP COLUMN IF EXISTS bucketing_version");
+        }
+    }
+}
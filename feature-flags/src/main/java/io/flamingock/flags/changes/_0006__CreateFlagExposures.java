@@ -0,0 +1,42 @@
+package io.flamingock.flags.changes;
+
+import io.flamingock.api.annotations.Apply;
+import io.flamingock.api.annotations.Change;
+import io.flamingock.api.annotations.Rollback;
+import io.flamingock.api.annotations.TargetSystem;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Append-only log of which user got which flag result. It has no foreign key or primary key so
+ * bulk inserts stay cheap.
+ */
+@TargetSystem(id = "postgres-flags")
+@Change(id = "create-flag-exposures", author = "dev")
+public class _0006__CreateFlagExposures {
+
+    @Apply
+    public void apply(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS flag_exposures (
+                        flag_name  VARCHAR(255) NOT NULL,
+                        user_id    VARCHAR(255) NOT NULL,
+                        enabled    BOOLEAN NOT NULL,
+                        reason     VARCHAR(32) NOT NULL,
+                        rule_id    UUID,
+                        exposed_at TIMESTAMPTZ NOT NULL
+                    )
+                    """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_flag_exposures_flag_time ON flag_exposures(flag_name, exposed_at)");
+        }
+    }
+
+    @Rollback
+    public void rollback(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS flag_exposures");
+        }
+    }
+}
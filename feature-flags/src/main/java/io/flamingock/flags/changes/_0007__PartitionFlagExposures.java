@@ -0,0 +1,81 @@
+package io.flamingock.flags.changes;
+
+import io.flamingock.api.annotations.Apply;
+import io.flamingock.api.annotations.Change;
+import io.flamingock.api.annotations.Rollback;
+import io.flamingock.api.annotations.TargetSystem;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Turns {@code flag_exposures} into a table range-partitioned by UTC day, so expired exposures are
+ * removed by dropping a partition instead of a bulk delete. Also installs
+ * {@code create_daily_partitions}, which {@code PartitionMaintenance} calls to keep partitions
+ * ahead of the clock.
+ */
+@TargetSystem(id = "postgres-flags")
+@Change(id = "partition-flag-exposures", author = "dev")
+public class _0007__PartitionFlagExposures {
+
+    @Apply
+    public void apply(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                    CREATE OR REPLACE FUNCTION create_daily_partitions(parent TEXT, first_day DATE, last_day DATE)
+                    RETURNS INT AS $$
+                    DECLARE
+                        day       DATE;
+                        child     TEXT;
+                        created   INT := 0;
+                    BEGIN
+                        FOR day IN SELECT generate_series(first_day, last_day, INTERVAL '1 day')::date LOOP
+                            child := parent || '_p' || to_char(day, 'YYYYMMDD');
+                            IF to_regclass(child) IS NULL THEN
+                                EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                                        child, parent,
+                                        day::timestamp AT TIME ZONE 'UTC', (day + 1)::timestamp AT TIME ZONE 'UTC');
+                                created := created + 1;
+                            END IF;
+                        END LOOP;
+                        RETURN created;
+                    END;
+                    $$ LANGUAGE plpgsql
+                    """);
+            stmt.execute("ALTER TABLE flag_exposures RENAME TO flag_exposures_legacy");
+            stmt.execute("ALTER INDEX idx_flag_exposures_flag_time RENAME TO idx_flag_exposures_legacy_flag_time");
+            stmt.execute("""
+                    CREATE TABLE flag_exposures (
+                        flag_name  VARCHAR(255) NOT NULL,
+                        user_id    VARCHAR(255) NOT NULL,
+                        enabled    BOOLEAN NOT NULL,
+                        reason     VARCHAR(32) NOT NULL,
+                        rule_id    UUID,
+                        exposed_at TIMESTAMPTZ NOT NULL
+                    ) PARTITION BY RANGE (exposed_at)
+                    """);
+            stmt.execute("CREATE INDEX idx_flag_exposures_exposed_at ON flag_exposures USING BRIN (exposed_at)");
+            stmt.execute("CREATE INDEX idx_flag_exposures_flag_time ON flag_exposures(flag_name, exposed_at)");
+            stmt.execute("""
+                    SELECT create_daily_partitions('flag_exposures',
+                            COALESCE((SELECT min(exposed_at AT TIME ZONE 'UTC')::date FROM flag_exposures_legacy),
+                                     (now() AT TIME ZONE 'UTC')::date),
+                            (now() AT TIME ZONE 'UTC')::date + 7)
+                    """);
+            stmt.execute("INSERT INTO flag_exposures SELECT * FROM flag_exposures_legacy");
+            stmt.execute("DROP TABLE flag_exposures_legacy");
+        }
+    }
+
+    @Rollback
+    public void rollback(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE flag_exposures_unpartitioned (LIKE flag_exposures INCLUDING DEFAULTS)");
+            stmt.execute("INSERT INTO flag_exposures_unpartitioned SELECT * FROM flag_exposures");
+            stmt.execute("DROP TABLE flag_exposures");
+            stmt.execute("ALTER TABLE flag_exposures_unpartitioned RENAME TO flag_exposures");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_flag_exposures_flag_time ON flag_exposures(flag_name, exposed_at)");
+            stmt.execute("DROP FUNCTION IF EXISTS create_daily_partitions(TEXT, DATE, DATE)");
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.flamingock.flags.changes;
+
+import io.flamingock.api.annotations.Apply;
+import io.flamingock.api.annotations.Change;
+import io.flamingock.api.annotations.Rollback;
+import io.flamingock.api.annotations.TargetSystem;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Partitions the {@code flag_changes} history by UTC day of {@code changed_at}. The version
+ * sequence and the triggers carry over unchanged; the primary key has to include the partition
+ * key.
+ */
+@TargetSystem(id = "postgres-flags")
+@Change(id = "partition-flag-changes", author = "dev")
+public class _0008__PartitionFlagChanges {
+
+    @Apply
+    public void apply(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE flag_changes RENAME TO flag_changes_legacy");
+            stmt.execute("ALTER TABLE flag_changes_legacy RENAME CONSTRAINT flag_changes_pkey TO flag_changes_legacy_pkey");
+            stmt.execute("ALTER INDEX idx_flag_changes_txid RENAME TO idx_flag_changes_legacy_txid");
+            stmt.execute("ALTER SEQUENCE flag_changes_version_seq OWNED BY NONE");
+            stmt.execute("""
+                    CREATE TABLE flag_changes (
+                        version    BIGINT NOT NULL DEFAULT nextval('flag_changes_version_seq'),
+                        flag_name  VARCHAR(255) NOT NULL,
+                        txid       BIGINT NOT NULL DEFAULT pg_current_xact_id()::text::bigint,
+                        changed_at TIMESTAMPTZ NOT NULL DEFAULT clock_timestamp(),
+                        PRIMARY KEY (version, changed_at)
+                    ) PARTITION BY RANGE (changed_at)
+                    """);
+            stmt.execute("ALTER SEQUENCE flag_changes_version_seq OWNED BY flag_changes.version");
+            stmt.execute("CREATE INDEX idx_flag_changes_txid ON flag_changes(txid)");
+            stmt.execute("CREATE INDEX idx_flag_changes_changed_at ON flag_changes USING BRIN (changed_at)");
+            stmt.execute("""
+                    SELECT create_daily_partitions('flag_changes',
+                            COALESCE((SELECT min(changed_at AT TIME ZONE 'UTC')::date FROM flag_changes_legacy),
+                                     (now() AT TIME ZONE 'UTC')::date),
+                            (now() AT TIME ZONE 'UTC')::date + 7)
+                    """);
+            stmt.execute("INSERT INTO flag_changes SELECT * FROM flag_changes_legacy");
+            stmt.execute("DROP TABLE flag_changes_legacy");
+        }
+    }
+
+    @Rollback
+    public void rollback(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER SEQUENCE flag_changes_version_seq OWNED BY NONE");
+            stmt.execute("""
+                    CREATE TABLE flag_changes_unpartitioned (
+                        version    BIGINT PRIMARY KEY DEFAULT nextval('flag_changes_version_seq'),
+                        flag_name  VARCHAR(255) NOT NULL,
+                        txid       BIGINT NOT NULL DEFAULT pg_current_xact_id()::text::bigint,
+                        changed_at TIMESTAMPTZ NOT NULL DEFAULT clock_timestamp()
+                    )
+                    """);
+            stmt.execute("INSERT INTO flag_changes_unpartitioned SELECT * FROM flag_changes");
+            stmt.execute("DROP TABLE flag_changes");
+            stmt.execute("ALTER TABLE flag_changes_unpartitioned RENAME TO flag_changes");
+            stmt.execute("ALTER TABLE flag_changes RENAME CONSTRAINT flag_changes_unpartitioned_pkey TO flag_changes_pkey");
+            stmt.execute("ALTER SEQUENCE flag_changes_version_seq OWNED BY flag_changes.version");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_flag_changes_txid ON flag_changes(txid)");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package io.flamingock.flags.changes;
+
+import io.flamingock.api.annotations.Apply;
+import io.flamingock.api.annotations.Change;
+import io.flamingock.api.annotations.Rollback;
+import io.flamingock.api.annotations.TargetSystem;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Segments and their members, stored as 64-bit hashes of the member ids. Statement-level triggers
+ * log every added or removed hash to {@code segment_changes}, partitioned by day like
+ * {@code flag_changes}, so other nodes can update their in-memory copy without reloading the
+ * whole segment.
+ */
+@TargetSystem(id = "postgres-flags")
+@Change(id = "create-segments", author = "dev")
+public class _0009__CreateSegments {
+
+    @Apply
+    public void apply(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS segments (
+                        name        VARCHAR(255) PRIMARY KEY,
+                        description TEXT,
+                        created_at  TIMESTAMPTZ DEFAULT NOW()
+                    )
+                    """);
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS segment_members (
+                        segment_name VARCHAR(255) NOT NULL REFERENCES segments(name) ON DELETE CASCADE,
+                        member_hash  BIGINT NOT NULL,
+                        PRIMARY KEY (segment_name, member_hash)
+                    )
+                    """);
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS segment_changes (
+                        segment_name VARCHAR(255) NOT NULL,
+                        member_hash  BIGINT NOT NULL,
+                        txid         BIGINT NOT NULL DEFAULT pg_current_xact_id()::text::bigint,
+                        changed_at   TIMESTAMPTZ NOT NULL DEFAULT clock_timestamp()
+                    ) PARTITION BY RANGE (changed_at)
+                    """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_segment_changes_txid ON segment_changes(txid)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_segment_changes_changed_at ON segment_changes USING BRIN (changed_at)");
+            stmt.execute("SELECT create_daily_partitions('segment_changes', (now() AT TIME ZONE 'UTC')::date, (now() AT TIME ZONE 'UTC')::date + 7)");
+            stmt.execute("""
+                    CREATE OR REPLACE FUNCTION record_segment_change() RETURNS trigger AS $$
+                    BEGIN
+                        IF TG_OP = 'INSERT' THEN
+                            INSERT INTO segment_changes(segment_name, member_hash)
+                            SELECT segment_name, member_hash FROM added_members;
+                        ELSE
+                            INSERT INTO segment_changes(segment_name, member_hash)
+                            SELECT segment_name, member_hash FROM removed_members;
+                        END IF;
+                        RETURN NULL;
+                    END;
+                    $$ LANGUAGE plpgsql
+                    """);
+            stmt.execute("""
+                    CREATE OR REPLACE TRIGGER trg_segment_members_insert
+                        AFTER INSERT ON segment_members
+                        REFERENCING NEW TABLE AS added_members
+                        FOR EACH STATEMENT EXECUTE FUNCTION record_segment_change()
+                    """);
+            stmt.execute("""
+                    CREATE OR REPLACE TRIGGER trg_segment_members_delete
+                        AFTER DELETE ON segment_members
+                        REFERENCING OLD TABLE AS removed_members
+                        FOR EACH STATEMENT EXECUTE FUNCTION record_segment_change()
+                    """);
+        }
+    }
+
+    @Rollback
+    public void rollback(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS segment_members");
+            stmt.execute("DROP FUNCTION IF EXISTS record_segment_change()");
+            stmt.execute("DROP TABLE IF EXISTS segment_changes");
+            stmt.execute("DROP TABLE IF EXISTS segments");
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.flamingock.flags.changes;
+
+import io.flamingock.api.annotations.Apply;
+import io.flamingock.api.annotations.Change;
+import io.flamingock.api.annotations.Rollback;
+import io.flamingock.api.annotations.TargetSystem;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Replaces the row-level change triggers with statement-level ones that log each affected flag
+ * once per statement. A bulk import touching a million rules then writes one {@code flag_changes}
+ * row per flag instead of one per rule.
+ */
+@TargetSystem(id = "postgres-flags")
+@Change(id = "statement-level-flag-changes", author = "dev")
+public class _0010__StatementLevelFlagChanges {
+
+    @Apply
+    public void apply(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TRIGGER IF EXISTS trg_feature_flags_change ON feature_flags");
+            stmt.execute("DROP TRIGGER IF EXISTS trg_targeting_rules_change ON targeting_rules");
+            stmt.execute("""
+                    CREATE OR REPLACE FUNCTION record_flag_statement() RETURNS trigger AS $$
+                    BEGIN
+                        IF TG_TABLE_NAME = 'feature_flags' THEN
+                            IF TG_OP = 'INSERT' THEN
+                                INSERT INTO flag_changes(flag_name) SELECT DISTINCT name FROM new_rows;
+                            ELSIF TG_OP = 'UPDATE' THEN
+                                INSERT INTO flag_changes(flag_name)
+                                SELECT name FROM new_rows UNION SELECT name FROM old_rows;
+                            ELSE
+                                INSERT INTO flag_changes(flag_name) SELECT DISTINCT name FROM old_rows;
+                            END IF;
+                        ELSE
+                            IF TG_OP = 'INSERT' THEN
+                                INSERT INTO flag_changes(flag_name) SELECT DISTINCT flag_name FROM new_rows;
+                            ELSIF TG_OP = 'UPDATE' THEN
+                                INSERT INTO flag_changes(flag_name)
+                                SELECT flag_name FROM new_rows UNION SELECT flag_name FROM old_rows;
+                            ELSE
+                                INSERT INTO flag_changes(flag_name) SELECT DISTINCT flag_name FROM old_rows;
+                            END IF;
+                        END IF;
+                        RETURN NULL;
+                    END;
+                    $$ LANGUAGE plpgsql
+                    """);
+            for (String table : new String[]{"feature_flags", "targeting_rules"}) {
+                stmt.execute("""
+                        CREATE OR REPLACE TRIGGER trg_%1$s_insert
+                            AFTER INSERT ON %1$s
+                            REFERENCING NEW TABLE AS new_rows
+                            FOR EACH STATEMENT EXECUTE FUNCTION record_flag_statement()
+                        """.formatted(table));
+                stmt.execute("""
+                        CREATE OR REPLACE TRIGGER trg_%1$s_update
+                            AFTER UPDATE ON %1$s
+                            REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+                            FOR EACH STATEMENT EXECUTE FUNCTION record_flag_statement()
+                        """.formatted(table));
+                stmt.execute("""
+                        CREATE OR REPLACE TRIGGER trg_%1$s_delete
+                            AFTER DELETE ON %1$s
+                            REFERENCING OLD TABLE AS old_rows
+                            FOR EACH STATEMENT EXECUTE FUNCTION record_flag_statement()
+                        """.formatted(table));
+            }
+        }
+    }
+
+    @Rollback
+    public void rollback(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            for (String table : new String[]{"feature_flags", "targeting_rules"}) {
+                stmt.execute("DROP TRIGGER IF EXISTS trg_" + table + "_insert ON " + table);
+                stmt.execute("DROP TRIGGER IF EXISTS trg_" + table + "_update ON " + table);
+                stmt.execute("DROP TRIGGER IF EXISTS trg_" + table + "_delete ON " + table);
+                stmt.execute("""
+                        CREATE OR REPLACE TRIGGER trg_%1$s_change
+                            AFTER INSERT OR UPDATE OR DELETE ON %1$s
+                            FOR EACH ROW EXECUTE FUNCTION record_flag_change()
+                        """.formatted(table));
+            }
+            stmt.execute("DROP FUNCTION IF EXISTS record_flag_statement()");
+        }
+    }
+}
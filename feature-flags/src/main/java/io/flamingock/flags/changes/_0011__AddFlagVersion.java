@@ -0,0 +1,32 @@
+package io.flamingock.flags.changes;
+
+import io.flamingock.api.annotations.Apply;
+import io.flamingock.api.annotations.Change;
+import io.flamingock.api.annotations.Rollback;
+import io.flamingock.api.annotations.TargetSystem;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Row version for optimistic concurrency on flag updates. Writers increment it in the same
+ * statement that checks it, so a stale update matches no row instead of overwriting.
+ */
+@TargetSystem(id = "postgres-flags")
+@Change(id = "add-flag-version", author = "dev")
+public class _0011__AddFlagVersion {
+
+    @Apply
+    public void apply(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE feature_flags ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0");
+        }
+    }
+
+    @Rollback
+    public void rollback(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE feature_flags DROP COLUMN IF EXISTS version");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package io.flamingock.flags.changes;
+
+import io.flamingock.api.annotations.Apply;
+import io.flamingock.api.annotations.Change;
+import io.flamingock.api.annotations.Rollback;
+import io.flamingock.api.annotations.TargetSystem;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Normalizes the values of {@code equals} and {@code in} rules into a {@code match_values} array,
+ * split the same way the engine splits an {@code in} list, with a GIN index on it. The column is
+ * generated, so every write path keeps it in step with {@code value}. {@code in_segment} rules get
+ * a partial index for joining against segment members. Together they let the rules targeting a
+ * given context be found without scanning every rule.
+ */
+@TargetSystem(id = "postgres-flags")
+@Change(id = "index-rule-values", author = "dev")
+public class _0012__IndexRuleValues {
+
+    @Apply
+    public void apply(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                    ALTER TABLE targeting_rules ADD COLUMN IF NOT EXISTS match_values TEXT[]
+                        GENERATED ALWAYS AS (
+                            CASE operator
+                                WHEN 'equals' THEN ARRAY[value]
+                                WHEN 'in' THEN string_to_array(value, ',')
+                            END
+                        ) STORED
+                    """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_targeting_rules_match_values ON targeting_rules USING GIN (match_values)");
+            stmt.execute("""
+                    CREATE INDEX IF NOT EXISTS idx_targeting_rules_segments
+                        ON targeting_rules (attribute, value) WHERE operator = 'in_segment'
+                    """);
+        }
+    }
+
+    @Rollback
+    public void rollback(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP INDEX IF EXISTS idx_targeting_rules_segments");
+            stmt.execute("DROP INDEX IF EXISTS idx_targeting_rules_match_values");
+            stmt.execute("ALTER TABLE targeting_rules DROP COLUMN IF EXISTS match_values");
+        }
+    }
+}
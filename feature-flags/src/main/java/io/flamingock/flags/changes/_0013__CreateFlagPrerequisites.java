@@ -0,0 +1,62 @@
+package io.flamingock.flags.changes;
+
+import io.flamingock.api.annotations.Apply;
+import io.flamingock.api.annotations.Change;
+import io.flamingock.api.annotations.Rollback;
+import io.flamingock.api.annotations.TargetSystem;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Prerequisites: a flag is only on for a user when every flag it requires is. Each row is one
+ * edge, ordered by {@code position} within its flag. Foreign keys keep both ends real flags, and a
+ * required flag cannot be deleted while something requires it. Cycles are rejected by the writers,
+ * see {@code FlagPrerequisiteRepository}. Changes are logged to {@code flag_changes} under the
+ * requiring flag by the same statement-level triggers as rules.
+ */
+@TargetSystem(id = "postgres-flags")
+@Change(id = "create-flag-prerequisites", author = "dev")
+public class _0013__CreateFlagPrerequisites {
+
+    @Apply
+    public void apply(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS flag_prerequisites (
+                        flag_name    VARCHAR(255) NOT NULL REFERENCES feature_flags(name) ON DELETE CASCADE,
+                        prerequisite VARCHAR(255) NOT NULL REFERENCES feature_flags(name) ON DELETE RESTRICT,
+                        position     INT NOT NULL,
+                        PRIMARY KEY (flag_name, prerequisite),
+                        CHECK (flag_name <> prerequisite)
+                    )
+                    """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_flag_prerequisites_prerequisite ON flag_prerequisites(prerequisite)");
+            stmt.execute("""
+                    CREATE OR REPLACE TRIGGER trg_flag_prerequisites_insert
+                        AFTER INSERT ON flag_prerequisites
+                        REFERENCING NEW TABLE AS new_rows
+                        FOR EACH STATEMENT EXECUTE FUNCTION record_flag_statement()
+                    """);
+            stmt.execute("""
+                    CREATE OR REPLACE TRIGGER trg_flag_prerequisites_update
+                        AFTER UPDATE ON flag_prerequisites
+                        REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+                        FOR EACH STATEMENT EXECUTE FUNCTION record_flag_statement()
+                    """);
+            stmt.execute("""
+                    CREATE OR REPLACE TRIGGER trg_flag_prerequisites_delete
+                        AFTER DELETE ON flag_prerequisites
+                        REFERENCING OLD TABLE AS old_rows
+                        FOR EACH STATEMENT EXECUTE FUNCTION record_flag_statement()
+                    """);
+        }
+    }
+
+    @Rollback
+    public void rollback(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS flag_prerequisites");
+        }
+    }
+}
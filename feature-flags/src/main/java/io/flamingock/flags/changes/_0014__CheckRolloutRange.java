@@ -0,0 +1,43 @@
+package io.flamingock.flags.changes;
+
+import io.flamingock.api.annotations.Apply;
+import io.flamingock.api.annotations.Change;
+import io.flamingock.api.annotations.Rollback;
+import io.flamingock.api.annotations.TargetSystem;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Keeps {@code rollout_basis_points} within {@code [0, 10000]} whichever writer sets it. Rows
+ * already out of range are clamped first, bumping their version so a stale {@code If-Match}
+ * cannot overwrite the clamped value.
+ */
+@TargetSystem(id = "postgres-flags")
+@Change(id = "check-rollout-range", author = "dev")
+public class _0014__CheckRolloutRange {
+
+    @Apply
+    public void apply(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                    UPDATE feature_flags
+                       SET rollout_basis_points = LEAST(GREATEST(rollout_basis_points, 0), 10000),
+                           version = version + 1
+                     WHERE rollout_basis_points NOT BETWEEN 0 AND 10000
+                    """);
+            stmt.execute("ALTER TABLE feature_flags DROP CONSTRAINT IF EXISTS feature_flags_rollout_basis_points_check");
+            stmt.execute("""
+                    ALTER TABLE feature_flags ADD CONSTRAINT feature_flags_rollout_basis_points_check
+                        CHECK (rollout_basis_points BETWEEN 0 AND 10000)
+                    """);
+        }
+    }
+
+    @Rollback
+    public void rollback(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE feature_flags DROP CONSTRAINT IF EXISTS feature_flags_rollout_basis_points_check");
+        }
+    }
+}
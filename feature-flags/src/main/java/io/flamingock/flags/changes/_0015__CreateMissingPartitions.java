@@ -0,0 +1,82 @@
+package io.flamingock.flags.changes;
+
+import io.flamingock.api.annotations.Apply;
+import io.flamingock.api.annotations.Change;
+import io.flamingock.api.annotations.Rollback;
+import io.flamingock.api.annotations.TargetSystem;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Lets writers create a missing daily partition themselves, so flag, rule and segment writes keep
+ * working if partition maintenance has not run for longer than it creates days ahead.
+ * {@code ensure_daily_partition} creates one day if it does not exist, tolerating a concurrent
+ * writer creating it first. Statement-level {@code BEFORE} triggers on every table whose changes
+ * are logged call it for today and tomorrow, before the {@code AFTER} triggers insert into
+ * {@code flag_changes} or {@code segment_changes}: a table cannot gain a partition from inside a
+ * statement inserting into it. Exposure batches call it when an insert fails.
+ * <p>
+ * No {@code DEFAULT} partition is used instead: while one exists Postgres refuses
+ * {@code DETACH PARTITION ... CONCURRENTLY}, so expiring a day would block every writer.
+ */
+@TargetSystem(id = "postgres-flags")
+@Change(id = "create-missing-partitions", author = "dev")
+public class _0015__CreateMissingPartitions {
+
+    private static final String[][] LOGGED = {
+            {"feature_flags", "flag_changes"},
+            {"targeting_rules", "flag_changes"},
+            {"flag_prerequisites", "flag_changes"},
+            {"segment_members", "segment_changes"}};
+
+    @Apply
+    public void apply(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                    CREATE OR REPLACE FUNCTION ensure_daily_partition(parent TEXT, day DATE)
+                    RETURNS BOOLEAN AS $$
+                    BEGIN
+                        IF to_regclass(parent || '_p' || to_char(day, 'YYYYMMDD')) IS NOT NULL THEN
+                            RETURN FALSE;
+                        END IF;
+                        BEGIN
+                            RETURN create_daily_partitions(parent, day, day) > 0;
+                        EXCEPTION WHEN duplicate_table THEN
+                            RETURN FALSE;
+                        END;
+                    END;
+                    $$ LANGUAGE plpgsql
+                    """);
+            stmt.execute("""
+                    CREATE OR REPLACE FUNCTION ensure_change_partitions() RETURNS trigger AS $$
+                    DECLARE
+                        today DATE := (clock_timestamp() AT TIME ZONE 'UTC')::date;
+                    BEGIN
+                        PERFORM ensure_daily_partition(TG_ARGV[0], today);
+                        PERFORM ensure_daily_partition(TG_ARGV[0], today + 1);
+                        RETURN NULL;
+                    END;
+                    $$ LANGUAGE plpgsql
+                    """);
+            for (String[] logged : LOGGED) {
+                stmt.execute("""
+                        CREATE OR REPLACE TRIGGER trg_%1$s_partitions
+                            BEFORE INSERT OR UPDATE OR DELETE ON %1$s
+                            FOR EACH STATEMENT EXECUTE FUNCTION ensure_change_partitions('%2$s')
+                        """.formatted(logged[0], logged[1]));
+            }
+        }
+    }
+
+    @Rollback
+    public void rollback(Connection connection) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            for (String[] logged : LOGGED) {
+                stmt.execute("DROP TRIGGER IF EXISTS trg_" + logged[0] + "_partitions ON " + logged[0]);
+            }
+            stmt.execute("DROP FUNCTION IF EXISTS ensure_change_partitions()");
+            stmt.execute("DROP FUNCTION IF EXISTS ensure_daily_partition(TEXT, DATE)");
+        }
+    }
+}
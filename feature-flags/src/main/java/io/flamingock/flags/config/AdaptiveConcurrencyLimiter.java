@@ -0,0 +1,135 @@
+package io.flamingock.flags.config;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * A limit on concurrent calls that follows their latency, in the manner of the gradient limiters
+ * of Netflix's concurrency-limits. Once per window the average time of the calls completed in it
+ * (short RTT) is compared with the time they take when nothing queues (no-load RTT). While the two
+ * agree, the limit grows by a fraction of its square root; when calls slow down, because they are
+ * queueing for CPU, threads or anything else, it shrinks in proportion, by at most a tenth per
+ * window.
+ * <p>
+ * The no-load RTT is learned from windows in which callers used less than half the limit, or the
+ * limit was already at its minimum; under sustained overload it only ever moves down, so a slow
+ * period does not become the new normal. The limit only grows while callers use more than half of
+ * it. {@link #tryAcquire} and {@link #release} are lock-free; one caller closes each window.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final int NO_LOAD_RTT_WINDOWS = 20;
+    /**
+     * How much slower than the no-load RTT a window may be before the limit shrinks.
+     */
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder windowNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final ReentrantLock update = new ReentrantLock();
+    private volatile long windowEnd;
+    private volatile int limit;
+    private double estimatedLimit;
+    private double noLoadRtt;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, LongSupplier nanoClock) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("need 1 <= min-limit <= initial-limit <= max-limit, got "
+                    + minLimit + ", " + initialLimit + ", " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.nanoClock = nanoClock;
+        this.estimatedLimit = initialLimit;
+        this.limit = initialLimit;
+        this.windowEnd = nanoClock.getAsLong() + WINDOW_NANOS;
+    }
+
+    /**
+     * Admits a call if fewer than {@link #limit()} are in flight. An admitted call must be ended
+     * with {@link #release}.
+     */
+    public boolean tryAcquire() {
+        int current = inFlight.incrementAndGet();
+        if (current > limit) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        if (current > peakInFlight.get()) {
+            peakInFlight.accumulateAndGet(current, Math::max);
+        }
+        return true;
+    }
+
+    /**
+     * Ends an admitted call that took {@code rttNanos}.
+     */
+    public void release(long rttNanos) {
+        inFlight.decrementAndGet();
+        windowNanos.add(rttNanos);
+        windowSamples.increment();
+        long now = nanoClock.getAsLong();
+        if (now - windowEnd >= 0 && update.tryLock()) {
+            try {
+                if (now - windowEnd >= 0) {
+                    closeWindow(now);
+                }
+            } finally {
+                update.unlock();
+            }
+        }
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private void closeWindow(long now) {
+        if (windowSamples.sum() < MIN_WINDOW_SAMPLES) {
+            return;
+        }
+        long samples = windowSamples.sumThenReset();
+        double shortRtt = (double) windowNanos.sumThenReset() / samples;
+        int peak = peakInFlight.getAndSet(inFlight.get());
+        windowEnd = now + WINDOW_NANOS;
+        if (shortRtt <= 0) {
+            return;
+        }
+
+        boolean saturated = peak >= estimatedLimit / 2 && estimatedLimit > minLimit;
+        if (noLoadRtt == 0) {
+            noLoadRtt = shortRtt;
+        } else if (!saturated) {
+            noLoadRtt += (shortRtt - noLoadRtt) * 2.0 / (NO_LOAD_RTT_WINDOWS + 1);
+        } else {
+            noLoadRtt = Math.min(noLoadRtt, shortRtt);
+        }
+        if (peak < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * noLoadRtt / shortRtt));
+        double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit,
+                estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING));
+        limit = (int) estimatedLimit;
+    }
+}
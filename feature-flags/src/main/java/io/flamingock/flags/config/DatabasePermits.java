@@ -0,0 +1,52 @@
+package io.flamingock.flags.config;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fair semaphore in front of the data source the application's queries go through, so thousands
+ * of virtual threads wait in line instead of all competing inside the pool. The permit count is its
+ * own setting rather than the pool size: connections taken straight from a pool (Flamingock, the
+ * actuator health check, the replica lag check) do not hold a permit, and keeping the count below
+ * {@code maximum-pool-size} leaves them a connection however busy requests are. A caller that
+ * cannot get a permit within the timeout fails with {@link SQLTransientConnectionException}.
+ */
+public class DatabasePermits {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutMillis;
+
+    public DatabasePermits(int maxConcurrency, long acquireTimeoutMillis) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("flags.db.max-concurrency must be at least 1, got " + maxConcurrency);
+        }
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    public int available() {
+        return permits.availablePermits();
+    }
+
+    public int waiting() {
+        return permits.getQueueLength();
+    }
+
+    void acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "No database permit within " + acquireTimeoutMillis + "ms (" + permits.getQueueLength() + " waiting)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database permit", e);
+        }
+    }
+
+    void release() {
+        permits.release();
+    }
+}
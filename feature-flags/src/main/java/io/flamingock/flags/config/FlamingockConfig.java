@@ -9,6 +9,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import javax.sql.DataSource;
+import java.sql.SQLException;
 
 @Configuration
 @EnableFlamingock(
@@ -17,8 +18,16 @@ import javax.sql.DataSource;
 public class FlamingockConfig {
 
     @Bean
-    public SqlTargetSystem sqlTargetSystem(DataSource dataSource) {
-        return new SqlTargetSystem("postgres-flags", dataSource);
+    public SqlTargetSystem sqlTargetSystem(DataSource dataSource) throws SQLException {
+        // Changes and their audit entries always go to the primary pool itself, never through replica
+        // routing or the database permits.
+        DataSource primary = dataSource;
+        if (dataSource.isWrapperFor(ReplicaRoutingDataSource.class)) {
+            primary = dataSource.unwrap(ReplicaRoutingDataSource.class).primary();
+        } else if (dataSource.isWrapperFor(ConcurrencyLimitedDataSource.class)) {
+            primary = dataSource.unwrap(ConcurrencyLimitedDataSource.class).getTargetDataSource();
+        }
+        return new SqlTargetSystem("postgres-flags", primary);
     }
 
     @Bean
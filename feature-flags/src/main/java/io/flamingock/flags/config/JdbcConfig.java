@@ -0,0 +1,44 @@
+package io.flamingock.flags.config;
+
+import org.springframework.boot.autoconfigure.jdbc.JdbcProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * The shared {@link JdbcTemplate}, plus one with a fetch size for the repositories that stream
+ * whole tables. Declaring the second makes Spring Boot back off from its own, so the shared one is
+ * declared here as well, configured from {@code spring.jdbc.template} the same way.
+ */
+@Configuration
+public class JdbcConfig {
+
+    /**
+     * Rows fetched per round trip by {@link #streamingJdbcTemplate}. The PostgreSQL driver only
+     * honours it inside a transaction; otherwise it buffers the whole result set.
+     */
+    static final int STREAMING_FETCH_SIZE = 500;
+
+    @Bean
+    @Primary
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, JdbcProperties properties) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        JdbcProperties.Template template = properties.getTemplate();
+        jdbcTemplate.setFetchSize(template.getFetchSize());
+        jdbcTemplate.setMaxRows(template.getMaxRows());
+        if (template.getQueryTimeout() != null) {
+            jdbcTemplate.setQueryTimeout((int) template.getQueryTimeout().getSeconds());
+        }
+        return jdbcTemplate;
+    }
+
+    @Bean
+    public JdbcTemplate streamingJdbcTemplate(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(STREAMING_FETCH_SIZE);
+        return jdbcTemplate;
+    }
+}
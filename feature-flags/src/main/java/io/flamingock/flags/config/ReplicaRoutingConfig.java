@@ -0,0 +1,95 @@
+package io.flamingock.flags.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+
+/**
+ * Active when {@code flags.datasource.replica.jdbc-url} is set. {@code spring.datasource} then
+ * becomes the primary pool and {@code flags.datasource.replica} a second pool on a streaming
+ * replica; the application's {@link DataSource} routes between them with a
+ * {@link ReplicaRoutingDataSource}.
+ */
+@Configuration
+@ConditionalOnExpression("'${flags.datasource.replica.jdbc-url:}' != ''")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("flags-primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("flags.datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("flags-replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                                             @Qualifier("replicaDataSource") DataSource replica,
+                                                             @Value("${flags.datasource.max-replica-lag:1000}") long maxLag,
+                                                             @Value("${flags.datasource.replica-check-interval:1000}") long checkInterval) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replica, Duration.ofMillis(maxLag));
+        routing.start(Duration.ofMillis(checkInterval));
+        return routing;
+    }
+
+    /**
+     * The data source JPA and {@code JdbcTemplate} are given. Explicit defaults keep the proxy from
+     * opening a connection at startup just to read them. With virtual threads the
+     * {@link DatabasePermits} sit behind the proxy, so a permit is only taken once a statement
+     * needs a connection, and one set of permits covers both pools.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routing, ObjectProvider<DatabasePermits> permits) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy();
+        DatabasePermits databasePermits = permits.getIfAvailable();
+        dataSource.setTargetDataSource(databasePermits != null
+                ? new ConcurrencyLimitedDataSource(routing, databasePermits) : routing);
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return dataSource;
+    }
+
+    @Bean
+    public MeterBinder replicaRoutingMetrics(ReplicaRoutingDataSource routing) {
+        return registry -> {
+            Gauge.builder("flags.db.replica.lag", routing, ReplicaRoutingDataSource::lagMillis)
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            Gauge.builder("flags.db.replica.usable", routing, r -> r.replicaUsable() ? 1 : 0)
+                    .register(registry);
+            FunctionCounter.builder("flags.db.connections", routing, ReplicaRoutingDataSource::primaryConnections)
+                    .tag("target", "primary")
+                    .register(registry);
+            FunctionCounter.builder("flags.db.connections", routing, ReplicaRoutingDataSource::replicaConnections)
+                    .tag("target", "replica")
+                    .register(registry);
+            FunctionCounter.builder("flags.db.replica.fallbacks", routing, ReplicaRoutingDataSource::fallbacks)
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,175 @@
+package io.flamingock.flags.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out replica connections to read-only transactions and primary connections to everything
+ * else: writes, reads outside a transaction and Flamingock. Whether a transaction is read-only is
+ * only known once Spring has started it, so this must sit behind a
+ * {@link LazyConnectionDataSourceProxy}, which fetches the physical connection at the first
+ * statement.
+ * <p>
+ * The replica's replay lag is checked every {@code checkInterval}. While it is more than
+ * {@code maxLag} behind, or cannot be checked, read-only transactions use the primary as well. A
+ * replica that fails to hand out a connection is skipped in the same way until the next successful
+ * check.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    /**
+     * Milliseconds the replica is behind: zero once it has replayed everything it received,
+     * otherwise the age of the last transaction it replayed. NULL until it has replayed anything.
+     */
+    static final String LAG = """
+            SELECT CASE
+                       WHEN NOT pg_is_in_recovery() THEN 0
+                       WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                       ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000
+                   END
+            """;
+
+    @FunctionalInterface
+    private interface Connector {
+        Connection connect(DataSource dataSource) throws SQLException;
+    }
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long maxLagMillis;
+    private final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("flags-replica-check").daemon().factory());
+    private final LongAdder primaryConnections = new LongAdder();
+    private final LongAdder replicaConnections = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private volatile boolean replicaUsable;
+    private volatile double lagMillis = Double.NaN;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, Duration maxLag) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagMillis = maxLag.toMillis();
+    }
+
+    /**
+     * Starts checking the replica. Until the first check succeeds every connection comes from the
+     * primary.
+     */
+    public void start(Duration checkInterval) {
+        long millis = checkInterval.toMillis();
+        checker.scheduleWithFixedDelay(this::checkReplica, 0, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connect(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connect(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    public DataSource primary() {
+        return primary;
+    }
+
+    public boolean replicaUsable() {
+        return replicaUsable;
+    }
+
+    /**
+     * Lag measured by the last check, or {@code NaN} if it failed.
+     */
+    public double lagMillis() {
+        return lagMillis;
+    }
+
+    public long primaryConnections() {
+        return primaryConnections.sum();
+    }
+
+    public long replicaConnections() {
+        return replicaConnections.sum();
+    }
+
+    /**
+     * Read-only transactions that wanted the replica but got a primary connection because the
+     * replica could not hand one out.
+     */
+    public long fallbacks() {
+        return fallbacks.sum();
+    }
+
+    @Override
+    public void close() {
+        checker.shutdownNow();
+    }
+
+    private Connection connect(Connector connector) throws SQLException {
+        if (replicaUsable && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            try {
+                Connection connection = connector.connect(replica);
+                replicaConnections.increment();
+                return connection;
+            } catch (SQLException e) {
+                fallbacks.increment();
+                setUsable(false, "no connection: " + e.getMessage());
+            }
+        }
+        Connection connection = connector.connect(primary);
+        primaryConnections.increment();
+        return connection;
+    }
+
+    void checkReplica() {
+        double lag;
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(LAG)) {
+            lag = Double.NaN;
+            if (rs.next()) {
+                double value = rs.getDouble(1);
+                lag = rs.wasNull() ? Double.NaN : value;
+            }
+        } catch (SQLException | RuntimeException e) {
+            lagMillis = Double.NaN;
+            setUsable(false, "lag check failed: " + e.getMessage());
+            return;
+        }
+        lagMillis = lag;
+        if (Double.isNaN(lag)) {
+            setUsable(false, "nothing replayed yet");
+        } else {
+            setUsable(lag <= maxLagMillis, Math.round(lag) + "ms behind, limit " + maxLagMillis + "ms");
+        }
+    }
+
+    private synchronized void setUsable(boolean usable, String reason) {
+        if (usable == replicaUsable) {
+            return;
+        }
+        replicaUsable = usable;
+        if (usable) {
+            log.info("Routing read-only transactions to the replica ({})", reason);
+        } else {
+            log.warn("Routing read-only transactions to the primary ({})", reason);
+        }
+    }
+}
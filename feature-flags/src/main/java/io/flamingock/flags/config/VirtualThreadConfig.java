@@ -0,0 +1,67 @@
+package io.flamingock.flags.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+
+/**
+ * Active with {@code spring.threads.virtual.enabled=true} (the {@code virtual-threads} profile).
+ * Tomcat then runs each request on its own virtual thread, so the number of concurrent requests is
+ * no longer what limits database access; the application's {@link DataSource} takes
+ * {@link DatabasePermits} instead. The Hikari pools stay beans of their own, unwrapped, so pool
+ * metrics and the health check see them as usual. With a read replica configured,
+ * {@link ReplicaRoutingConfig} puts the permits in front of the routing data source.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    @Bean
+    public DatabasePermits databasePermits(@Value("${flags.db.max-concurrency:8}") int maxConcurrency,
+                                           @Value("${flags.db.acquire-timeout:2000}") long acquireTimeout) {
+        return new DatabasePermits(maxConcurrency, acquireTimeout);
+    }
+
+    @Bean
+    public MeterBinder databasePermitMetrics(DatabasePermits permits) {
+        return registry -> {
+            Gauge.builder("flags.db.permits.available", permits, DatabasePermits::available).register(registry);
+            Gauge.builder("flags.db.permits.waiting", permits, DatabasePermits::waiting).register(registry);
+        };
+    }
+
+    /**
+     * Without a replica Spring Boot would make the Hikari pool the application's data source, so it
+     * is declared here instead, next to the limited data source in front of it.
+     */
+    @Configuration
+    @ConditionalOnExpression("'${flags.datasource.replica.jdbc-url:}' == ''")
+    static class PrimaryOnly {
+
+        @Bean
+        @ConfigurationProperties("spring.datasource.hikari")
+        public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+            HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+            dataSource.setPoolName("flags-primary");
+            return dataSource;
+        }
+
+        @Bean
+        @Primary
+        public DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource pool, DatabasePermits permits) {
+            return new ConcurrencyLimitedDataSource(pool, permits);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.flamingock.flags.controller;
+
+import io.flamingock.flags.config.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Admission control for {@code GET /flags/evaluate/{name}} and {@code POST /flags/evaluate}. At
+ * most {@link AdaptiveConcurrencyLimiter#limit()} of these run at once, and the limit follows how
+ * long they take. A request over the limit is either answered {@code 503} with
+ * {@code Retry-After} straight away ({@code flags.admission.overload: reject}), or still evaluated
+ * from the current snapshot but with no exposure recorded and no explanation
+ * ({@code snapshot}).
+ */
+@Component
+public class EvaluationAdmissionFilter extends OncePerRequestFilter {
+
+    /**
+     * Request attribute set to {@code true} on requests admitted over the limit in
+     * {@code snapshot} mode.
+     */
+    public static final String SHED = EvaluationAdmissionFilter.class.getName() + ".shed";
+
+    enum Overload {
+        REJECT, SNAPSHOT
+    }
+
+    private final boolean enabled;
+    private final Overload overload;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Counter rejected;
+    private final Counter shed;
+
+    public EvaluationAdmissionFilter(MeterRegistry registry,
+                                     @Value("${flags.admission.enabled:true}") boolean enabled,
+                                     @Value("${flags.admission.overload:reject}") String overload,
+                                     @Value("${flags.admission.initial-limit:50}") int initialLimit,
+                                     @Value("${flags.admission.min-limit:10}") int minLimit,
+                                     @Value("${flags.admission.max-limit:1000}") int maxLimit) {
+        this.enabled = enabled;
+        this.overload = Overload.valueOf(overload.toUpperCase(Locale.ROOT));
+        this.limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit);
+        this.rejected = Counter.builder("flags.admission.over-limit").tag("action", "rejected").register(registry);
+        this.shed = Counter.builder("flags.admission.over-limit").tag("action", "snapshot").register(registry);
+        Gauge.builder("flags.admission.limit", limiter, AdaptiveConcurrencyLimiter::limit).register(registry);
+        Gauge.builder("flags.admission.in-flight", limiter, AdaptiveConcurrencyLimiter::inFlight).register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return switch (request.getMethod()) {
+            case "GET" -> !path.startsWith("/flags/evaluate/");
+            case "POST" -> !path.equals("/flags/evaluate");
+            default -> true;
+        };
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long started = System.nanoTime();
+        if (!limiter.tryAcquire()) {
+            if (overload == Overload.SNAPSHOT) {
+                shed.increment();
+                request.setAttribute(SHED, Boolean.TRUE);
+                chain.doFilter(request, response);
+                return;
+            }
+            rejected.increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            limiter.release(System.nanoTime() - started);
+        }
+    }
+}
@@ -1,85 +1,457 @@
 package io.flamingock.flags.controller;
 
+import io.flamingock.flags.engine.BucketingAlgorithm;
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.CompiledRule;
+import io.flamingock.flags.engine.EvalResult;
+import io.flamingock.flags.engine.FlagSnapshot;
+import io.flamingock.flags.engine.RuleOperator;
+import io.flamingock.flags.engine.SnapshotDefinition;
 import io.flamingock.flags.model.FeatureFlag;
 import io.flamingock.flags.model.TargetingRule;
+import io.flamingock.flags.repository.FlagCursorRepository.FlagRow;
+import io.flamingock.flags.repository.FlagPrerequisiteRepository;
 import io.flamingock.flags.repository.FlagRepository;
+import io.flamingock.flags.repository.FlagUpdateRepository;
+import io.flamingock.flags.repository.FlagUpdateRepository.FlagUpdate;
+import io.flamingock.flags.repository.SegmentRepository;
 import io.flamingock.flags.repository.TargetingRuleRepository;
+import io.flamingock.flags.service.BatchEvaluationService;
 import io.flamingock.flags.service.EvaluationService;
+import io.flamingock.flags.service.FlagEventBroadcaster;
+import io.flamingock.flags.service.FlagImportService;
+import io.flamingock.flags.service.FlagImportService.ImportSummary;
+import io.flamingock.flags.service.FlagSnapshotService;
+import io.flamingock.flags.service.FlagStreamService;
+import io.flamingock.flags.service.TargetingLookupService;
+import io.flamingock.flags.service.TargetingLookupService.TargetingMatch;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.ToIntFunction;
 
 @RestController
 @RequestMapping("/flags")
 public class FlagController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * What changes whenever a listed flag does: every update bumps {@code version}, and a flag that
+     * is deleted and created again gets a new {@code createdAt}.
+     */
+    private static final ToIntFunction<FeatureFlag> FLAG_STATE =
+            flag -> Objects.hash(flag.getName(), flag.getVersion(), flag.getCreatedAt());
+
+    /**
+     * Rules carry no version and can be updated in place by an import, so their contents are hashed.
+     */
+    private static final ToIntFunction<TargetingRule> RULE_STATE =
+            rule -> Objects.hash(rule.getId(), rule.getAttribute(), rule.getOperator(), rule.getValue());
+
     record CreateFlagRequest(String name, String description) {
     }
 
-    record UpdateFlagRequest(Boolean enabled, Integer rolloutPercentage) {
+    record UpdateFlagRequest(Boolean enabled, Integer rolloutPercentage, Integer rolloutBasisPoints) {
     }
 
     record AddRuleRequest(String attribute, String operator, String value) {
     }
 
+    record BatchUpdateRequest(String name, Boolean enabled, Integer rolloutPercentage, Integer rolloutBasisPoints,
+                              Long version) {
+    }
+
+    record EvaluateAllRequest(String userId, Map<String, String> attributes, boolean explain) {
+    }
+
     private final FlagRepository flagRepository;
     private final TargetingRuleRepository ruleRepository;
     private final EvaluationService evaluationService;
+    private final FlagSnapshotService snapshotService;
+    private final BatchEvaluationService batchEvaluationService;
+    private final FlagEventBroadcaster eventBroadcaster;
+    private final FlagStreamService flagStreamService;
+    private final SegmentRepository segmentRepository;
+    private final FlagImportService importService;
+    private final FlagUpdateRepository updateRepository;
+    private final TargetingLookupService targetingLookupService;
+    private final FlagPrerequisiteRepository prerequisiteRepository;
 
-    public FlagController(FlagRepository flagRepository, TargetingRuleRepository ruleRepository, EvaluationService evaluationService) {
+    public FlagController(FlagRepository flagRepository, TargetingRuleRepository ruleRepository,
+                          EvaluationService evaluationService, FlagSnapshotService snapshotService,
+                          BatchEvaluationService batchEvaluationService, FlagEventBroadcaster eventBroadcaster,
+                          FlagStreamService flagStreamService, SegmentRepository segmentRepository,
+                          FlagImportService importService, FlagUpdateRepository updateRepository,
+                          TargetingLookupService targetingLookupService,
+                          FlagPrerequisiteRepository prerequisiteRepository) {
         this.flagRepository = flagRepository;
         this.ruleRepository = ruleRepository;
         this.evaluationService = evaluationService;
+        this.snapshotService = snapshotService;
+        this.batchEvaluationService = batchEvaluationService;
+        this.eventBroadcaster = eventBroadcaster;
+        this.flagStreamService = flagStreamService;
+        this.segmentRepository = segmentRepository;
+        this.importService = importService;
+        this.updateRepository = updateRepository;
+        this.targetingLookupService = targetingLookupService;
+        this.prerequisiteRepository = prerequisiteRepository;
     }
 
     @PostMapping
     public FeatureFlag createFlag(@RequestBody CreateFlagRequest request) {
-        return flagRepository.save(new FeatureFlag(request.name(), request.description()));
+        FeatureFlag flag = flagRepository.save(new FeatureFlag(request.name(), request.description()));
+        snapshotService.refresh(flag.getName());
+        return flag;
     }
 
+    /**
+     * With {@code limit}, returns one page ordered by name and a {@code Link: rel="next"} header
+     * whose {@code after} cursor is the last name on the page.
+     */
     @GetMapping
-    public List<FeatureFlag> listFlags() {
-        return flagRepository.findAll();
+    public ResponseEntity<List<FeatureFlag>> listFlags(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "") String after,
+            WebRequest request) {
+        if (limit == null) {
+            List<FeatureFlag> flags = flagRepository.findAll();
+            if (request.checkNotModified(rowsEtag(request, flags, FLAG_STATE))) {
+                return null;
+            }
+            return ResponseEntity.ok(flags);
+        }
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<FeatureFlag> page = flagRepository.findByNameGreaterThanOrderByName(after, PageRequest.ofSize(pageSize));
+        if (request.checkNotModified(rowsEtag(request, page, FLAG_STATE))) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == pageSize) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("limit", pageSize)
+                    .replaceQueryParam("after", page.get(page.size() - 1).getName())
+                    .encode()
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page);
+    }
+
+    /**
+     * Selected with {@code format=ndjson} rather than by {@code Accept}, so clients sending
+     * {@code Accept: *}{@code /*} keep getting the JSON array.
+     */
+    @GetMapping(params = "format=ndjson")
+    public void streamFlags(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        flagStreamService.writeFlags(response.getOutputStream());
     }
 
+    /**
+     * Upserts flags and replaces their rules from an NDJSON stream in the format of
+     * {@code GET /flags/export}, in a single transaction.
+     */
+    @PostMapping(value = "/import", consumes = NDJSON)
+    public ImportSummary importFlags(InputStream body) throws IOException {
+        try {
+            return importService.importNdjson(body);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/export", produces = NDJSON)
+    public void exportFlags(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        flagStreamService.writeExport(response.getOutputStream());
+    }
+
+    @GetMapping("/snapshot")
+    public SnapshotDefinition snapshot(WebRequest request) {
+        FlagSnapshot snapshot = snapshotService.current();
+        if (request.checkNotModified(snapshotEtag(request, snapshot))) {
+            return null;
+        }
+        return snapshot.definition();
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return eventBroadcaster.subscribe(lastEventId);
+    }
+
+    @GetMapping("/{name}")
+    public ResponseEntity<FeatureFlag> getFlag(@PathVariable String name) {
+        FeatureFlag flag = flagRepository.findById(name)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "flag not found: " + name));
+        return ResponseEntity.ok().eTag(flagEtag(flag.getVersion())).body(flag);
+    }
+
+    /**
+     * With {@code If-Match} set to the flag's ETag, the update only applies if nobody has changed
+     * the flag since, and fails with {@code 412 Precondition Failed} otherwise.
+     */
     @PutMapping("/{name}")
-    public FeatureFlag updateFlag(@PathVariable String name, @RequestBody UpdateFlagRequest request) {
-        FeatureFlag flag = flagRepository.findById(name).orElseThrow();
-        if (request.enabled() != null) {
-            flag.setEnabled(request.enabled());
+    public ResponseEntity<FlagRow> updateFlag(
+            @PathVariable String name,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody UpdateFlagRequest request) {
+        FlagUpdate update = new FlagUpdate(name, request.enabled(),
+                basisPoints(request.rolloutPercentage(), request.rolloutBasisPoints()), expectedVersion(ifMatch));
+        FlagRow updated = applyUpdates(List.of(update)).get(0);
+        return ResponseEntity.ok().eTag(flagEtag(updated.version())).body(updated);
+    }
+
+    /**
+     * Updates several flags in one transaction: if any flag is missing or not at the given
+     * {@code version}, none are changed.
+     */
+    @PatchMapping
+    public List<FlagRow> updateFlags(@RequestBody List<BatchUpdateRequest> request) {
+        Set<String> names = new HashSet<>();
+        List<FlagUpdate> updates = new ArrayList<>(request.size());
+        for (BatchUpdateRequest item : request) {
+            if (item.name() == null || !names.add(item.name())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "each update needs a distinct name");
+            }
+            updates.add(new FlagUpdate(item.name(), item.enabled(),
+                    basisPoints(item.rolloutPercentage(), item.rolloutBasisPoints()), item.version()));
         }
-        if (request.rolloutPercentage() != null) {
-            flag.setRolloutPercentage(request.rolloutPercentage());
+        return updates.isEmpty() ? List.of() : applyUpdates(updates);
+    }
+
+    private List<FlagRow> applyUpdates(List<FlagUpdate> updates) {
+        List<FlagRow> updated;
+        try {
+            updated = updateRepository.updateAll(updates);
+        } catch (NoSuchElementException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+        }
+        snapshotService.refresh(updated.stream().map(FlagRow::name).toList());
+        return updated;
+    }
+
+    /**
+     * The rollout to store, checked against the same range as imports. The percentage is checked
+     * before it is scaled, so a large one cannot overflow into range.
+     */
+    private static Integer basisPoints(Integer rolloutPercentage, Integer rolloutBasisPoints) {
+        if (rolloutBasisPoints != null) {
+            if (rolloutBasisPoints < 0 || rolloutBasisPoints > BucketingAlgorithm.BASIS_POINTS) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "rolloutBasisPoints must be between 0 and " + BucketingAlgorithm.BASIS_POINTS);
+            }
+            return rolloutBasisPoints;
+        }
+        if (rolloutPercentage == null) {
+            return null;
         }
-        return flagRepository.save(flag);
+        if (rolloutPercentage < 0 || rolloutPercentage > 100) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "rolloutPercentage must be between 0 and 100");
+        }
+        return rolloutPercentage * 100;
+    }
+
+    /**
+     * The version an {@code If-Match} header asks for, or {@code null} for an unconditional update.
+     * Weak or unparseable tags can never match.
+     */
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match any version: " + ifMatch);
     }
 
     @GetMapping("/evaluate/{name}")
-    public EvaluationService.EvalResult evaluate(
+    public EvalResult evaluate(
             @PathVariable String name,
             @RequestParam String userId,
-            @RequestParam Map<String, String> allParams) {
+            @RequestParam(defaultValue = "false") boolean explain,
+            @RequestParam Map<String, String> allParams,
+            @RequestAttribute(name = EvaluationAdmissionFilter.SHED, required = false) Boolean shed) {
         Map<String, String> attrs = new HashMap<>(allParams);
         attrs.remove("userId");
-        return evaluationService.evaluate(name, userId, attrs);
+        attrs.remove("explain");
+        if (Boolean.TRUE.equals(shed)) {
+            return evaluationService.evaluateShed(name, userId, attrs);
+        }
+        return evaluationService.evaluate(name, userId, attrs, explain);
+    }
+
+    @PostMapping("/evaluate")
+    public Map<String, EvalResult> evaluateAll(
+            @RequestBody EvaluateAllRequest request,
+            @RequestAttribute(name = EvaluationAdmissionFilter.SHED, required = false) Boolean shed) {
+        if (request.userId() == null || request.userId().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "userId is required");
+        }
+        Map<String, String> attrs = request.attributes() != null ? request.attributes() : Map.of();
+        if (Boolean.TRUE.equals(shed)) {
+            return evaluationService.evaluateAllShed(request.userId(), attrs);
+        }
+        return evaluationService.evaluateAll(request.userId(), attrs, request.explain());
+    }
+
+    /**
+     * Rules whose {@code equals}, {@code in} or {@code in_segment} condition the given attributes
+     * satisfy, found through indexes. Rules with other operators are not considered.
+     */
+    @GetMapping("/targeting")
+    public List<TargetingMatch> targeting(@RequestParam Map<String, String> attributes) {
+        return targetingLookupService.matching(attributes);
+    }
+
+    @PostMapping(value = "/evaluate/stream", consumes = NDJSON, produces = NDJSON)
+    public void evaluateStream(
+            @RequestParam List<String> flags,
+            @RequestParam(defaultValue = "false") boolean ordered,
+            InputStream body,
+            HttpServletResponse response) throws IOException {
+        List<CompiledFlag> resolved;
+        try {
+            resolved = batchEvaluationService.resolve(flags);
+        } catch (NoSuchElementException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+        response.setContentType(NDJSON);
+        batchEvaluationService.evaluate(body, response.getOutputStream(), resolved, ordered);
     }
 
     @PostMapping("/{name}/rules")
     public TargetingRule addRule(@PathVariable String name, @RequestBody AddRuleRequest request) {
-        return ruleRepository.save(new TargetingRule(name, request.attribute(), request.operator(), request.value()));
+        try {
+            CompiledRule.compile(null, request.attribute(), request.operator(), request.value());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (RuleOperator.IN_SEGMENT.code().equals(request.operator()) && !segmentRepository.exists(request.value())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "no segment named " + request.value());
+        }
+        TargetingRule rule = ruleRepository.save(new TargetingRule(name, request.attribute(), request.operator(), request.value()));
+        snapshotService.refresh(name);
+        return rule;
     }
 
     @GetMapping("/{name}/rules")
-    public List<TargetingRule> listRules(@PathVariable String name) {
-        return ruleRepository.findByFlagName(name);
+    public List<TargetingRule> listRules(@PathVariable String name, WebRequest request) {
+        List<TargetingRule> rules = ruleRepository.findByFlagName(name);
+        if (request.checkNotModified(rowsEtag(request, rules, RULE_STATE))) {
+            return null;
+        }
+        return rules;
+    }
+
+    @GetMapping(value = "/{name}/rules", params = "format=ndjson")
+    public void streamRules(@PathVariable String name, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        flagStreamService.writeRules(name, response.getOutputStream());
+    }
+
+    @GetMapping("/{name}/prerequisites")
+    public List<String> listPrerequisites(@PathVariable String name) {
+        return prerequisiteRepository.findByFlagName(name);
+    }
+
+    /**
+     * Replaces the flags {@code name} requires, in the order given. Fails with {@code 400} if one
+     * does not exist or if flags would end up requiring each other in a cycle.
+     */
+    @PutMapping("/{name}/prerequisites")
+    public List<String> setPrerequisites(@PathVariable String name, @RequestBody List<String> prerequisites) {
+        if (prerequisites.stream().anyMatch(prerequisite -> prerequisite == null || prerequisite.isBlank())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "prerequisites must be flag names");
+        }
+        List<String> saved;
+        try {
+            saved = prerequisiteRepository.replace(name, prerequisites);
+        } catch (NoSuchElementException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        snapshotService.refresh(name);
+        return saved;
+    }
+
+    /**
+     * A single flag is tagged with its row version, which every update to the flag increments. A
+     * client sends the tag back in {@code If-Match} to update only the flag it read; if the row has
+     * moved on since, the update is rejected with {@code 412 Precondition Failed}.
+     */
+    private static String flagEtag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    private String snapshotEtag(WebRequest request, FlagSnapshot snapshot) {
+        return "\"" + representation(request) + "-" + snapshotService.epoch() + "-" + snapshot.version() + "\"";
+    }
+
+    /**
+     * ETag for rows read from the database, computed from the rows themselves rather than the
+     * snapshot, which may be behind the database or ahead of a lagging replica.
+     */
+    private static <T> String rowsEtag(WebRequest request, List<T> rows, ToIntFunction<T> rowHash) {
+        long hash = rows.size();
+        for (T row : rows) {
+            hash = hash * 31 + rowHash.applyAsInt(row);
+        }
+        return "\"" + representation(request) + "-" + rows.size() + "-" + Long.toHexString(hash) + "\"";
+    }
+
+    /**
+     * JSON and CBOR bodies of the same data need different ETags. Sets {@code Vary: Accept} so
+     * caches keep them apart too.
+     */
+    private static String representation(WebRequest request) {
+        if (request instanceof ServletWebRequest servletRequest && servletRequest.getResponse() != null) {
+            servletRequest.getResponse().setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return accept != null && accept.contains(MediaType.APPLICATION_CBOR_VALUE) ? "cbor" : "json";
     }
 }
@@ -0,0 +1,109 @@
+package io.flamingock.flags.controller;
+
+import io.flamingock.flags.engine.Segment;
+import io.flamingock.flags.repository.SegmentRepository;
+import io.flamingock.flags.repository.SegmentRepository.SegmentRow;
+import io.flamingock.flags.service.FlagSnapshotService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/segments")
+public class SegmentController {
+
+    record CreateSegmentRequest(String name, String description) {
+    }
+
+    record UpdateMembersRequest(List<String> add, List<String> remove) {
+    }
+
+    record SegmentSize(String name, int size) {
+    }
+
+    record Membership(String segment, String id, boolean member) {
+    }
+
+    private final SegmentRepository segmentRepository;
+    private final FlagSnapshotService snapshotService;
+
+    public SegmentController(SegmentRepository segmentRepository, FlagSnapshotService snapshotService) {
+        this.segmentRepository = segmentRepository;
+        this.snapshotService = snapshotService;
+    }
+
+    @PostMapping
+    public SegmentSize createSegment(@RequestBody CreateSegmentRequest request) {
+        if (request.name() == null || request.name().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "name is required");
+        }
+        if (!segmentRepository.create(request.name(), request.description())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "segment already exists: " + request.name());
+        }
+        snapshotService.refreshSegments(Map.of(request.name(), new long[0]));
+        return new SegmentSize(request.name(), 0);
+    }
+
+    @GetMapping
+    public List<SegmentRow> listSegments() {
+        return segmentRepository.findAll();
+    }
+
+    /**
+     * Adds and removes members by id. Ids are stored hashed, so they cannot be listed back.
+     */
+    @PostMapping("/{name}/members")
+    public SegmentSize updateMembers(@PathVariable String name, @RequestBody UpdateMembersRequest request) {
+        if (!segmentRepository.exists(name)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "no segment named " + name);
+        }
+        long[] added = hashes(request.add());
+        long[] removed = hashes(request.remove());
+        segmentRepository.updateMembers(name, added, removed);
+
+        Set<Long> touched = new HashSet<>();
+        for (long hash : added) {
+            touched.add(hash);
+        }
+        for (long hash : removed) {
+            touched.add(hash);
+        }
+        snapshotService.refreshSegments(Map.of(name, touched.stream().mapToLong(Long::longValue).toArray()));
+        Segment segment = snapshotService.current().segments().get(name);
+        return new SegmentSize(name, segment != null ? segment.size() : 0);
+    }
+
+    @GetMapping("/{name}/members/{id}")
+    public Membership isMember(@PathVariable String name, @PathVariable String id) {
+        Segment segment = snapshotService.current().segments().get(name);
+        if (segment == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "no segment named " + name);
+        }
+        return new Membership(name, id, segment.contains(id));
+    }
+
+    private static long[] hashes(List<String> ids) {
+        if (ids == null) {
+            return new long[0];
+        }
+        long[] hashes = new long[ids.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            String id = ids.get(i);
+            if (id == null || id.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "member ids must not be empty");
+            }
+            hashes[i] = Segment.hash(id);
+        }
+        return hashes;
+    }
+}
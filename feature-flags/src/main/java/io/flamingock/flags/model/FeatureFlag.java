@@ -1,5 +1,6 @@
 package io.flamingock.flags.model;
 
+import io.flamingock.flags.engine.BucketingAlgorithm;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
@@ -20,12 +21,24 @@ public class FeatureFlag {
     @Column(name = "rollout_percentage")
     private int rolloutPercentage = 100;
 
+    @Column(name = "rollout_basis_points")
+    private int rolloutBasisPoints = BucketingAlgorithm.BASIS_POINTS;
+
+    @Column(name = "bucketing_version")
+    private int bucketingVersion = BucketingAlgorithm.CURRENT_VERSION;
+
     @Column(name = "created_at")
     private Instant createdAt;
 
     @Column(name = "updated_at")
     private Instant updatedAt;
 
+    /**
+     * Maintained by the conditional updates in {@code FlagUpdateRepository}, never written by JPA.
+     */
+    @Column(insertable = false, updatable = false)
+    private long version;
+
     protected FeatureFlag() {
     }
 
@@ -34,6 +47,8 @@ public class FeatureFlag {
         this.description = description;
         this.enabled = false;
         this.rolloutPercentage = 100;
+        this.rolloutBasisPoints = BucketingAlgorithm.BASIS_POINTS;
+        this.bucketingVersion = BucketingAlgorithm.CURRENT_VERSION;
         this.createdAt = Instant.now();
         this.updatedAt = this.createdAt;
     }
@@ -60,10 +75,23 @@ public class FeatureFlag {
     }
 
     public void setRolloutPercentage(int rolloutPercentage) {
-        this.rolloutPercentage = rolloutPercentage;
+        setRolloutBasisPoints(rolloutPercentage * 100);
+    }
+
+    public int getRolloutBasisPoints() {
+        return rolloutBasisPoints;
+    }
+
+    public void setRolloutBasisPoints(int rolloutBasisPoints) {
+        this.rolloutBasisPoints = rolloutBasisPoints;
+        this.rolloutPercentage = rolloutBasisPoints / 100;
         this.updatedAt = Instant.now();
     }
 
+    public int getBucketingVersion() {
+        return bucketingVersion;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -71,4 +99,8 @@ public class FeatureFlag {
     public Instant getUpdatedAt() {
         return updatedAt;
     }
+
+    public long getVersion() {
+        return version;
+    }
 }
@@ -0,0 +1,77 @@
+package io.flamingock.flags.repository;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Bulk writes to {@code flag_exposures}. With {@code reWriteBatchedInserts=true} on the JDBC URL
+ * the PostgreSQL driver sends each batch as multi-row inserts instead of one statement per row.
+ * A batch runs as one implicit transaction, so one that fails for want of a daily partition wrote
+ * nothing and is retried once after creating the missing days.
+ */
+@Repository
+public class ExposureRepository {
+
+    public record Exposure(String flagName, String userId, boolean enabled, String reason, UUID ruleId,
+                           long exposedAtMillis) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ExposureRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertAll(List<Exposure> exposures) {
+        try {
+            insert(exposures);
+        } catch (DataIntegrityViolationException e) {
+            if (!createMissingPartitions(exposures)) {
+                throw e;
+            }
+            insert(exposures);
+        }
+    }
+
+    /**
+     * Creates the partitions missing for the days in {@code exposures}, returning whether any were.
+     */
+    private boolean createMissingPartitions(List<Exposure> exposures) {
+        Set<LocalDate> days = new TreeSet<>();
+        for (Exposure exposure : exposures) {
+            days.add(LocalDate.ofInstant(Instant.ofEpochMilli(exposure.exposedAtMillis()), ZoneOffset.UTC));
+        }
+        boolean created = false;
+        for (LocalDate day : days) {
+            created |= Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT ensure_daily_partition('flag_exposures', ?)", Boolean.class, Date.valueOf(day)));
+        }
+        return created;
+    }
+
+    private void insert(List<Exposure> exposures) {
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO flag_exposures (flag_name, user_id, enabled, reason, rule_id, exposed_at)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """, exposures, exposures.size(), (ps, exposure) -> {
+            ps.setString(1, exposure.flagName());
+            ps.setString(2, exposure.userId());
+            ps.setBoolean(3, exposure.enabled());
+            ps.setString(4, exposure.reason());
+            ps.setObject(5, exposure.ruleId(), Types.OTHER);
+            ps.setTimestamp(6, new Timestamp(exposure.exposedAtMillis()));
+        });
+    }
+}
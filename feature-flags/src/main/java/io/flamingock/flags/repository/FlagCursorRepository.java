@@ -0,0 +1,165 @@
+package io.flamingock.flags.repository;
+
+import io.flamingock.flags.repository.FlagImportRepository.ImportedFlag;
+import io.flamingock.flags.repository.FlagImportRepository.ImportedRule;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Forward-only reads over the full flag and rule tables. The PostgreSQL driver only streams rows
+ * with a fetch size inside a transaction; otherwise it buffers the whole result set.
+ * <p>
+ * The consumer usually writes to an HTTP response, so a slow client keeps the transaction and its
+ * pooled connection open. Two limits bound that. Postgres ends the session if it waits longer than
+ * {@code flags.streaming.idle-timeout} for the next fetch. A stream still running after
+ * {@code flags.streaming.max-duration} fails with a {@link QueryTimeoutException}.
+ */
+@Repository
+public class FlagCursorRepository {
+
+    public record FlagRow(String name, String description, boolean enabled, int rolloutPercentage,
+                          int rolloutBasisPoints, int bucketingVersion, Instant createdAt, Instant updatedAt,
+                          long version) {
+    }
+
+    public record RuleRow(UUID id, String flagName, String attribute, String operator, String value, Instant createdAt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long idleTimeoutMillis;
+    private final long maxDurationMillis;
+
+    public FlagCursorRepository(@Qualifier("streamingJdbcTemplate") JdbcTemplate jdbcTemplate,
+                                @Value("${flags.streaming.idle-timeout:30000}") long idleTimeoutMillis,
+                                @Value("${flags.streaming.max-duration:300000}") long maxDurationMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxDurationMillis = maxDurationMillis;
+    }
+
+    @Transactional(readOnly = true)
+    public void forEachFlag(Consumer<FlagRow> consumer) {
+        Consumer<FlagRow> bounded = bounded(consumer);
+        jdbcTemplate.query("""
+                SELECT name, description, enabled, rollout_percentage, rollout_basis_points,
+                       bucketing_version, created_at, updated_at, version
+                FROM feature_flags
+                ORDER BY name
+                """, rs -> {
+            bounded.accept(flagRow(rs));
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public void forEachRule(String flagName, Consumer<RuleRow> consumer) {
+        Consumer<RuleRow> bounded = bounded(consumer);
+        jdbcTemplate.query("""
+                SELECT id, flag_name, attribute, operator, value, created_at
+                FROM targeting_rules
+                WHERE flag_name = ?
+                ORDER BY created_at
+                """, rs -> {
+            bounded.accept(new RuleRow(
+                    rs.getObject("id", UUID.class),
+                    rs.getString("flag_name"),
+                    rs.getString("attribute"),
+                    rs.getString("operator"),
+                    rs.getString("value"),
+                    instant(rs.getObject("created_at", OffsetDateTime.class))));
+        }, flagName);
+    }
+
+    /**
+     * Every flag with its rules and prerequisites, in the shape {@link FlagImportRepository} accepts. One ordered join
+     * is read and grouped on the fly, so only one flag's rules are held at a time. The flag passed to {@code consumer} is only
+     * valid for the duration of the call.
+     */
+    @Transactional(readOnly = true)
+    public void forEachFlagWithRules(Consumer<ImportedFlag> consumer) {
+        Consumer<ImportedFlag> bounded = bounded(consumer);
+        List<ImportedRule> rules = new ArrayList<>();
+        ImportedFlag[] pending = new ImportedFlag[1];
+        jdbcTemplate.query("""
+                SELECT f.name, f.description, f.enabled, f.rollout_basis_points, f.bucketing_version,
+                       ARRAY(SELECT p.prerequisite FROM flag_prerequisites p
+                             WHERE p.flag_name = f.name ORDER BY p.position) AS prerequisites,
+                       r.id, r.attribute, r.operator, r.value
+                FROM feature_flags f
+                LEFT JOIN targeting_rules r ON r.flag_name = f.name
+                ORDER BY f.name, r.created_at
+                """, rs -> {
+            String name = rs.getString("name");
+            if (pending[0] == null || !pending[0].name().equals(name)) {
+                if (pending[0] != null) {
+                    bounded.accept(pending[0]);
+                }
+                rules.clear();
+                pending[0] = new ImportedFlag(name, rs.getString("description"), rs.getBoolean("enabled"),
+                        rs.getInt("rollout_basis_points"), rs.getInt("bucketing_version"), rules,
+                        prerequisites(rs.getArray("prerequisites")));
+            }
+            UUID id = rs.getObject("id", UUID.class);
+            if (id != null) {
+                rules.add(new ImportedRule(id, rs.getString("attribute"), rs.getString("operator"), rs.getString("value")));
+            }
+        });
+        if (pending[0] != null) {
+            bounded.accept(pending[0]);
+        }
+    }
+
+    /**
+     * Applies both limits to the current transaction; must be called inside it, before the query.
+     */
+    private <T> Consumer<T> bounded(Consumer<T> consumer) {
+        jdbcTemplate.queryForObject("SELECT set_config('idle_in_transaction_session_timeout', ?, true)", String.class,
+                idleTimeoutMillis + "ms");
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDurationMillis);
+        return row -> {
+            if (System.nanoTime() - deadline > 0) {
+                throw new QueryTimeoutException("stream still running after " + maxDurationMillis + " ms");
+            }
+            consumer.accept(row);
+        };
+    }
+
+    static FlagRow flagRow(ResultSet rs) throws SQLException {
+        return new FlagRow(
+                rs.getString("name"),
+                rs.getString("description"),
+                rs.getBoolean("enabled"),
+                rs.getInt("rollout_percentage"),
+                rs.getInt("rollout_basis_points"),
+                rs.getInt("bucketing_version"),
+                instant(rs.getObject("created_at", OffsetDateTime.class)),
+                instant(rs.getObject("updated_at", OffsetDateTime.class)),
+                rs.getLong("version"));
+    }
+
+    private static List<String> prerequisites(Array array) throws SQLException {
+        try {
+            return List.of((String[]) array.getArray());
+        } finally {
+            array.free();
+        }
+    }
+
+    private static Instant instant(OffsetDateTime value) {
+        return value != null ? value.toInstant() : null;
+    }
+}
@@ -0,0 +1,91 @@
+package io.flamingock.flags.repository;
+
+import io.flamingock.flags.engine.FlagDefinition;
+import io.flamingock.flags.engine.RuleDefinition;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reads flags with their rules and prerequisites straight into the engine's immutable definitions,
+ * for building the evaluation snapshot. One statement aggregates each flag's rules into arrays, so
+ * there is no second query, no row per rule repeating the flag columns, and no persistence context.
+ */
+@Repository
+public class FlagDefinitionRepository {
+
+    private static final String SELECT = """
+            SELECT f.name, f.enabled, f.rollout_basis_points, f.bucketing_version,
+                   array_agg(r.id ORDER BY r.created_at) FILTER (WHERE r.id IS NOT NULL) AS rule_ids,
+                   array_agg(r.attribute ORDER BY r.created_at) FILTER (WHERE r.id IS NOT NULL) AS attributes,
+                   array_agg(r.operator ORDER BY r.created_at) FILTER (WHERE r.id IS NOT NULL) AS operators,
+                   array_agg(r.value ORDER BY r.created_at) FILTER (WHERE r.id IS NOT NULL) AS rule_values,
+                   ARRAY(SELECT p.prerequisite FROM flag_prerequisites p
+                         WHERE p.flag_name = f.name ORDER BY p.position) AS prerequisites
+            FROM feature_flags f
+            LEFT JOIN targeting_rules r ON r.flag_name = f.name
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FlagDefinitionRepository(@Qualifier("streamingJdbcTemplate") JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional(readOnly = true)
+    public List<FlagDefinition> findAll() {
+        return jdbcTemplate.query(SELECT + "GROUP BY f.name", (rs, i) -> definition(rs));
+    }
+
+    @Transactional(readOnly = true)
+    public List<FlagDefinition> findByNames(Collection<String> names) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT + "WHERE f.name = ANY(?) GROUP BY f.name");
+            ps.setArray(1, con.createArrayOf("varchar", names.toArray()));
+            return ps;
+        }, (rs, i) -> definition(rs));
+    }
+
+    private static FlagDefinition definition(ResultSet rs) throws SQLException {
+        Object[] ids = elements(rs.getArray("rule_ids"));
+        List<RuleDefinition> rules;
+        if (ids.length == 0) {
+            rules = List.of();
+        } else {
+            Object[] attributes = elements(rs.getArray("attributes"));
+            Object[] operators = elements(rs.getArray("operators"));
+            Object[] values = elements(rs.getArray("rule_values"));
+            rules = new ArrayList<>(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                rules.add(new RuleDefinition((UUID) ids[i], (String) attributes[i], (String) operators[i], (String) values[i]));
+            }
+        }
+        List<String> prerequisites = new ArrayList<>();
+        for (Object prerequisite : elements(rs.getArray("prerequisites"))) {
+            prerequisites.add((String) prerequisite);
+        }
+        return new FlagDefinition(rs.getString("name"), rs.getBoolean("enabled"), rs.getInt("rollout_basis_points"),
+                rs.getInt("bucketing_version"), rules, prerequisites);
+    }
+
+    private static Object[] elements(Array array) throws SQLException {
+        if (array == null) {
+            return new Object[0];
+        }
+        try {
+            return (Object[]) array.getArray();
+        } finally {
+            array.free();
+        }
+    }
+}
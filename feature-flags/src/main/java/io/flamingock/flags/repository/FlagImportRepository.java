@@ -0,0 +1,163 @@
+package io.flamingock.flags.repository;
+
+import io.flamingock.flags.engine.BucketingAlgorithm;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes a stream of flags with their rules in one transaction, as upserts in JDBC batches. With
+ * {@code reWriteBatchedInserts=true} each batch reaches Postgres as multi-row inserts.
+ */
+@Repository
+public class FlagImportRepository {
+
+    private static final int MAX_BATCH_FLAGS = 1_000;
+    private static final int MAX_BATCH_RULES = 5_000;
+
+    /**
+     * A flag as imported. Missing fields take the defaults of a new flag; an existing flag without
+     * a {@code bucketingVersion} keeps its own. {@code rules} replaces the flag's rules, and
+     * {@code prerequisites}, when present, its prerequisites; these may name flags further on in
+     * the same import.
+     */
+    public record ImportedFlag(String name, String description, Boolean enabled, Integer rolloutBasisPoints,
+                               Integer bucketingVersion, List<ImportedRule> rules, List<String> prerequisites) {
+    }
+
+    /**
+     * A rule with an {@code id} updates that rule; without one, a new rule is created.
+     */
+    public record ImportedRule(UUID id, String attribute, String operator, String value) {
+    }
+
+    public record ImportCounts(int flags, int rules, int removedRules) {
+    }
+
+    private record RuleRow(UUID id, String flagName, ImportedRule rule, Instant createdAt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FlagPrerequisiteRepository prerequisiteRepository;
+
+    public FlagImportRepository(JdbcTemplate jdbcTemplate, FlagPrerequisiteRepository prerequisiteRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.prerequisiteRepository = prerequisiteRepository;
+    }
+
+    /**
+     * Consumes {@code flags} in batches. Anything thrown while iterating rolls back the whole
+     * import. Rules are given increasing creation times in input order, which is the order they
+     * are evaluated in. Prerequisites are written last, once every flag they may name exists.
+     *
+     * @throws IllegalArgumentException if a prerequisite is not a flag or closes a cycle
+     */
+    @Transactional
+    public ImportCounts importAll(Iterator<ImportedFlag> flags, int defaultBucketingVersion) {
+        Instant base = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        List<ImportedFlag> batch = new ArrayList<>();
+        int batchRules = 0;
+        int flagCount = 0;
+        int ruleCount = 0;
+        int removed = 0;
+        Map<String, List<String>> prerequisites = new LinkedHashMap<>();
+        while (flags.hasNext()) {
+            ImportedFlag flag = flags.next();
+            batch.add(flag);
+            if (flag.prerequisites() != null) {
+                prerequisites.put(flag.name(), List.copyOf(new LinkedHashSet<>(flag.prerequisites())));
+            }
+            batchRules += flag.rules() != null ? flag.rules().size() : 0;
+            if (batch.size() >= MAX_BATCH_FLAGS || batchRules >= MAX_BATCH_RULES) {
+                removed += writeBatch(batch, defaultBucketingVersion, base.plus(ruleCount, ChronoUnit.MICROS));
+                flagCount += batch.size();
+                ruleCount += batchRules;
+                batch.clear();
+                batchRules = 0;
+            }
+        }
+        if (!batch.isEmpty()) {
+            removed += writeBatch(batch, defaultBucketingVersion, base.plus(ruleCount, ChronoUnit.MICROS));
+            flagCount += batch.size();
+            ruleCount += batchRules;
+        }
+        prerequisiteRepository.replaceAll(prerequisites);
+        return new ImportCounts(flagCount, ruleCount, removed);
+    }
+
+    private int writeBatch(List<ImportedFlag> batch, int defaultBucketingVersion, Instant rulesFrom) {
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO feature_flags (name, description, enabled, rollout_percentage, rollout_basis_points,
+                                           bucketing_version, created_at, updated_at)
+                VALUES (?, ?, ?, ?, ?, ?, now(), now())
+                ON CONFLICT (name) DO UPDATE SET
+                    description = EXCLUDED.description,
+                    enabled = EXCLUDED.enabled,
+                    rollout_percentage = EXCLUDED.rollout_percentage,
+                    rollout_basis_points = EXCLUDED.rollout_basis_points,
+                    bucketing_version = COALESCE(?, feature_flags.bucketing_version),
+                    version = feature_flags.version + 1,
+                    updated_at = now()
+                """, batch, batch.size(), (ps, flag) -> {
+            int basisPoints = flag.rolloutBasisPoints() != null ? flag.rolloutBasisPoints() : BucketingAlgorithm.BASIS_POINTS;
+            ps.setString(1, flag.name());
+            ps.setString(2, flag.description());
+            ps.setBoolean(3, Boolean.TRUE.equals(flag.enabled()));
+            ps.setInt(4, basisPoints / 100);
+            ps.setInt(5, basisPoints);
+            ps.setInt(6, flag.bucketingVersion() != null ? flag.bucketingVersion() : defaultBucketingVersion);
+            ps.setObject(7, flag.bucketingVersion(), Types.INTEGER);
+        });
+
+        List<String> names = new ArrayList<>(batch.size());
+        List<UUID> kept = new ArrayList<>();
+        List<RuleRow> rules = new ArrayList<>();
+        for (ImportedFlag flag : batch) {
+            names.add(flag.name());
+            for (ImportedRule rule : flag.rules() != null ? flag.rules() : List.<ImportedRule>of()) {
+                UUID id = rule.id() != null ? rule.id() : UUID.randomUUID();
+                kept.add(id);
+                rules.add(new RuleRow(id, flag.name(), rule, rulesFrom.plus(rules.size(), ChronoUnit.MICROS)));
+            }
+        }
+        int removed = jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement("DELETE FROM targeting_rules WHERE flag_name = ANY(?) AND id <> ALL(?)");
+            ps.setArray(1, con.createArrayOf("varchar", names.toArray()));
+            ps.setArray(2, con.createArrayOf("uuid", kept.toArray()));
+            return ps;
+        });
+        if (!rules.isEmpty()) {
+            jdbcTemplate.batchUpdate("""
+                    INSERT INTO targeting_rules (id, flag_name, attribute, operator, value, created_at)
+                    VALUES (?, ?, ?, ?, ?, ?)
+                    ON CONFLICT (id) DO UPDATE SET
+                        flag_name = EXCLUDED.flag_name,
+                        attribute = EXCLUDED.attribute,
+                        operator = EXCLUDED.operator,
+                        value = EXCLUDED.value,
+                        created_at = EXCLUDED.created_at
+                    """, rules, rules.size(), (ps, row) -> {
+                ps.setObject(1, row.id(), Types.OTHER);
+                ps.setString(2, row.flagName());
+                ps.setString(3, row.rule().attribute());
+                ps.setString(4, row.rule().operator());
+                ps.setString(5, row.rule().value());
+                ps.setTimestamp(6, Timestamp.from(row.createdAt()));
+            });
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,123 @@
+package io.flamingock.flags.repository;
+
+import io.flamingock.flags.engine.PrerequisiteGraph;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Which flags each flag requires. Every write checks the whole graph for cycles with the new edges
+ * in place, under a transaction-scoped advisory lock, so two writes that would only form a cycle
+ * together cannot both pass.
+ */
+@Repository
+public class FlagPrerequisiteRepository {
+
+    private static final String LOCK = "SELECT pg_advisory_xact_lock(hashtext('flag-prerequisites'))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FlagPrerequisiteRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional(readOnly = true)
+    public List<String> findByFlagName(String name) {
+        return jdbcTemplate.queryForList(
+                "SELECT prerequisite FROM flag_prerequisites WHERE flag_name = ? ORDER BY position", String.class, name);
+    }
+
+    /**
+     * Replaces the prerequisites of {@code name}, dropping repeats, and returns them.
+     *
+     * @throws NoSuchElementException   if {@code name} is not a flag
+     * @throws IllegalArgumentException if a prerequisite is not a flag, or would close a cycle
+     */
+    @Transactional
+    public List<String> replace(String name, List<String> prerequisites) {
+        if (jdbcTemplate.queryForList("SELECT name FROM feature_flags WHERE name = ?", String.class, name).isEmpty()) {
+            throw new NoSuchElementException("flag not found: " + name);
+        }
+        List<String> distinct = List.copyOf(new LinkedHashSet<>(prerequisites));
+        replaceAll(Map.of(name, distinct));
+        return distinct;
+    }
+
+    /**
+     * Replaces the prerequisites of every flag in {@code prerequisites}, which must all exist; the
+     * lists must not repeat names. Used by imports, after all flags in them are written.
+     *
+     * @throws IllegalArgumentException if a prerequisite is not a flag, or the graph would have a
+     *                                  cycle
+     */
+    @Transactional
+    public void replaceAll(Map<String, List<String>> prerequisites) {
+        if (prerequisites.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute(LOCK);
+
+        Set<String> required = new HashSet<>();
+        prerequisites.values().forEach(required::addAll);
+        if (!required.isEmpty()) {
+            Set<String> existing = new HashSet<>(jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement("SELECT name FROM feature_flags WHERE name = ANY(?)");
+                ps.setArray(1, con.createArrayOf("varchar", required.toArray()));
+                return ps;
+            }, (rs, i) -> rs.getString(1)));
+            for (Map.Entry<String, List<String>> entry : prerequisites.entrySet()) {
+                for (String prerequisite : entry.getValue()) {
+                    if (!existing.contains(prerequisite)) {
+                        throw new IllegalArgumentException("flag " + entry.getKey() + " requires unknown flag " + prerequisite);
+                    }
+                }
+            }
+        }
+
+        Map<String, List<String>> graph = new HashMap<>();
+        jdbcTemplate.query("SELECT flag_name, prerequisite FROM flag_prerequisites ORDER BY flag_name, position", rs -> {
+            graph.computeIfAbsent(rs.getString(1), k -> new ArrayList<>()).add(rs.getString(2));
+        });
+        graph.putAll(prerequisites);
+        PrerequisiteGraph.topologicalOrder(graph);
+
+        String[] names = prerequisites.keySet().toArray(String[]::new);
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement("DELETE FROM flag_prerequisites WHERE flag_name = ANY(?)");
+            ps.setArray(1, con.createArrayOf("varchar", names));
+            return ps;
+        });
+        List<String> flagNames = new ArrayList<>();
+        List<String> requiredNames = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : prerequisites.entrySet()) {
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                flagNames.add(entry.getKey());
+                requiredNames.add(entry.getValue().get(i));
+                positions.add(i);
+            }
+        }
+        if (!flagNames.isEmpty()) {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement("""
+                        INSERT INTO flag_prerequisites (flag_name, prerequisite, position)
+                        SELECT * FROM unnest(?::varchar[], ?::varchar[], ?::int[])
+                        """);
+                ps.setArray(1, con.createArrayOf("varchar", flagNames.toArray()));
+                ps.setArray(2, con.createArrayOf("varchar", requiredNames.toArray()));
+                ps.setArray(3, con.createArrayOf("integer", positions.toArray()));
+                return ps;
+            });
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package io.flamingock.flags.repository;
 
 import io.flamingock.flags.model.FeatureFlag;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+
 public interface FlagRepository extends JpaRepository<FeatureFlag, String> {
+    List<FeatureFlag> findByNameGreaterThanOrderByName(String name, Pageable pageable);
 }
@@ -0,0 +1,114 @@
+package io.flamingock.flags.repository;
+
+import io.flamingock.flags.repository.FlagCursorRepository.FlagRow;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Flag updates as a single conditional {@code UPDATE ... RETURNING}, however many flags change:
+ * the version check, the write and the read-back of the new row share one round trip.
+ */
+@Repository
+public class FlagUpdateRepository {
+
+    /**
+     * Null fields are left unchanged. A null {@code expectedVersion} updates whatever version is
+     * current.
+     */
+    public record FlagUpdate(String name, Boolean enabled, Integer rolloutBasisPoints, Long expectedVersion) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FlagUpdateRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Applies every update or none of them, and returns the new rows in the order of
+     * {@code updates}. Names must be distinct.
+     *
+     * @throws NoSuchElementException            if a flag does not exist
+     * @throws OptimisticLockingFailureException if a flag is no longer at its expected version
+     */
+    @Transactional
+    public List<FlagRow> updateAll(List<FlagUpdate> updates) {
+        int size = updates.size();
+        String[] names = new String[size];
+        Boolean[] enabled = new Boolean[size];
+        Integer[] basisPoints = new Integer[size];
+        Long[] versions = new Long[size];
+        for (int i = 0; i < size; i++) {
+            FlagUpdate update = updates.get(i);
+            names[i] = update.name();
+            enabled[i] = update.enabled();
+            basisPoints[i] = update.rolloutBasisPoints();
+            versions[i] = update.expectedVersion();
+        }
+        List<FlagRow> rows = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("""
+                    UPDATE feature_flags f SET
+                        enabled = COALESCE(u.enabled, f.enabled),
+                        rollout_basis_points = COALESCE(u.basis_points, f.rollout_basis_points),
+                        rollout_percentage = COALESCE(u.basis_points, f.rollout_basis_points) / 100,
+                        version = f.version + 1,
+                        updated_at = now()
+                    FROM unnest(?::varchar[], ?::boolean[], ?::int[], ?::bigint[])
+                         AS u(name, enabled, basis_points, expected_version)
+                    WHERE f.name = u.name
+                      AND (u.expected_version IS NULL OR f.version = u.expected_version)
+                    RETURNING f.name, f.description, f.enabled, f.rollout_percentage, f.rollout_basis_points,
+                              f.bucketing_version, f.created_at, f.updated_at, f.version
+                    """);
+            ps.setArray(1, con.createArrayOf("varchar", names));
+            ps.setArray(2, con.createArrayOf("boolean", enabled));
+            ps.setArray(3, con.createArrayOf("integer", basisPoints));
+            ps.setArray(4, con.createArrayOf("bigint", versions));
+            return ps;
+        }, (rs, i) -> FlagCursorRepository.flagRow(rs));
+
+        Map<String, FlagRow> byName = new HashMap<>();
+        for (FlagRow row : rows) {
+            byName.put(row.name(), row);
+        }
+        if (byName.size() < size) {
+            failUnmatched(names, byName.keySet());
+        }
+        List<FlagRow> ordered = new ArrayList<>(size);
+        for (String name : names) {
+            ordered.add(byName.get(name));
+        }
+        return ordered;
+    }
+
+    private void failUnmatched(String[] names, Set<String> updated) {
+        List<String> unmatched = new ArrayList<>();
+        for (String name : names) {
+            if (!updated.contains(name)) {
+                unmatched.add(name);
+            }
+        }
+        Set<String> existing = new HashSet<>(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT name FROM feature_flags WHERE name = ANY(?)");
+            ps.setArray(1, con.createArrayOf("varchar", unmatched.toArray()));
+            return ps;
+        }, (rs, i) -> rs.getString(1)));
+        for (String name : unmatched) {
+            if (!existing.contains(name)) {
+                throw new NoSuchElementException("flag not found: " + name);
+            }
+        }
+        throw new OptimisticLockingFailureException("flags changed since the expected version: " + unmatched);
+    }
+}
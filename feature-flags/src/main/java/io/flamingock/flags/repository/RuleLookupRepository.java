@@ -0,0 +1,65 @@
+package io.flamingock.flags.repository;
+
+import io.flamingock.flags.engine.Segment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Finds the rules that target a context, through the {@code match_values} GIN index for
+ * {@code equals}/{@code in} rules and the segment member primary key for {@code in_segment} rules.
+ * Other operators cannot be answered from an index and are not returned.
+ */
+@Repository
+public class RuleLookupRepository {
+
+    public record RuleRef(String flagName, UUID ruleId) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RuleLookupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional(readOnly = true)
+    public List<RuleRef> findCandidates(Map<String, String> attributes) {
+        int size = attributes.size();
+        String[] names = new String[size];
+        String[] values = new String[size];
+        Long[] hashes = new Long[size];
+        int i = 0;
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            names[i] = attribute.getKey();
+            values[i] = attribute.getValue();
+            hashes[i] = Segment.hash(attribute.getValue());
+            i++;
+        }
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("""
+                    WITH ctx (attribute, value, member_hash) AS (
+                        SELECT * FROM unnest(?::varchar[], ?::text[], ?::bigint[])
+                    )
+                    SELECT r.flag_name, r.id
+                    FROM targeting_rules r
+                    WHERE r.match_values && ?::text[]
+                      AND EXISTS (SELECT 1 FROM ctx WHERE ctx.attribute = r.attribute AND ctx.value = ANY(r.match_values))
+                    UNION ALL
+                    SELECT r.flag_name, r.id
+                    FROM ctx
+                    JOIN targeting_rules r ON r.attribute = ctx.attribute AND r.operator = 'in_segment'
+                    JOIN segment_members m ON m.segment_name = r.value AND m.member_hash = ctx.member_hash
+                    """);
+            ps.setArray(1, con.createArrayOf("varchar", names));
+            ps.setArray(2, con.createArrayOf("text", values));
+            ps.setArray(3, con.createArrayOf("bigint", hashes));
+            ps.setArray(4, con.createArrayOf("text", values));
+            return ps;
+        }, (rs, row) -> new RuleRef(rs.getString("flag_name"), rs.getObject("id", UUID.class)));
+    }
+}
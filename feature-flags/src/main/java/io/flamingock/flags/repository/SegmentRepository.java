@@ -0,0 +1,156 @@
+package io.flamingock.flags.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Segments and their member hashes. Membership is read and written in bulk, so this goes through
+ * JDBC rather than JPA.
+ */
+@Repository
+public class SegmentRepository {
+
+    /**
+     * Member hashes fetched per round trip when a whole segment is read. Set per statement, since
+     * the other queries here go through the shared template.
+     */
+    private static final int FETCH_SIZE = 10_000;
+
+    public record SegmentRow(String name, String description, long size, Instant createdAt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SegmentRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean create(String name, String description) {
+        return jdbcTemplate.update("INSERT INTO segments (name, description) VALUES (?, ?) ON CONFLICT DO NOTHING",
+                name, description) == 1;
+    }
+
+    public boolean exists(String name) {
+        Boolean exists = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM segments WHERE name = ?)",
+                Boolean.class, name);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    public Set<String> names() {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT name FROM segments", String.class));
+    }
+
+    public List<SegmentRow> findAll() {
+        return jdbcTemplate.query("""
+                SELECT s.name, s.description, s.created_at,
+                       (SELECT count(*) FROM segment_members m WHERE m.segment_name = s.name) AS size
+                FROM segments s
+                ORDER BY s.name
+                """, (rs, i) -> {
+            OffsetDateTime createdAt = rs.getObject("created_at", OffsetDateTime.class);
+            return new SegmentRow(rs.getString("name"), rs.getString("description"), rs.getLong("size"),
+                    createdAt != null ? createdAt.toInstant() : null);
+        });
+    }
+
+    @Transactional
+    public void updateMembers(String name, long[] added, long[] removed) {
+        if (added.length > 0) {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement("""
+                        INSERT INTO segment_members (segment_name, member_hash)
+                        SELECT ?, unnest(?::bigint[])
+                        ON CONFLICT DO NOTHING
+                        """);
+                ps.setString(1, name);
+                ps.setArray(2, bigintArray(con, added));
+                return ps;
+            });
+        }
+        if (removed.length > 0) {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement("DELETE FROM segment_members WHERE segment_name = ? AND member_hash = ANY(?)");
+                ps.setString(1, name);
+                ps.setArray(2, bigintArray(con, removed));
+                return ps;
+            });
+        }
+    }
+
+    /**
+     * Every segment with its member hashes, sorted. Segments without members are included.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, long[]> loadAll() {
+        Map<String, long[]> segments = new HashMap<>();
+        jdbcTemplate.query("SELECT name FROM segments", rs -> {
+            segments.put(rs.getString(1), new long[0]);
+        });
+        Map<String, Integer> sizes = new HashMap<>();
+        String allMembers = "SELECT segment_name, member_hash FROM segment_members ORDER BY segment_name, member_hash";
+        jdbcTemplate.query(con -> fetching(con, allMembers), rs -> {
+            String name = rs.getString(1);
+            long[] members = segments.get(name);
+            int size = sizes.getOrDefault(name, 0);
+            if (size == members.length) {
+                members = Arrays.copyOf(members, Math.max(16, size * 2));
+                segments.put(name, members);
+            }
+            members[size] = rs.getLong(2);
+            sizes.put(name, size + 1);
+        });
+        segments.replaceAll((name, members) -> Arrays.copyOf(members, sizes.getOrDefault(name, 0)));
+        return segments;
+    }
+
+    /**
+     * Returns the members of segment {@code name}, or {@code null} if it does not exist.
+     */
+    @Transactional(readOnly = true)
+    public long[] load(String name) {
+        if (!exists(name)) {
+            return null;
+        }
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = fetching(con, "SELECT member_hash FROM segment_members WHERE segment_name = ?");
+            ps.setString(1, name);
+            return ps;
+        }, (rs, i) -> rs.getLong(1)).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Which of {@code hashes} are currently members of segment {@code name}.
+     */
+    public long[] present(String name, long[] hashes) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT member_hash FROM segment_members WHERE segment_name = ? AND member_hash = ANY(?)");
+            ps.setString(1, name);
+            ps.setArray(2, bigintArray(con, hashes));
+            return ps;
+        }, (rs, i) -> rs.getLong(1)).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static PreparedStatement fetching(Connection connection, String sql) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(sql);
+        ps.setFetchSize(FETCH_SIZE);
+        return ps;
+    }
+
+    private static Array bigintArray(Connection connection, long[] values) throws SQLException {
+        return connection.createArrayOf("bigint", Arrays.stream(values).boxed().toArray());
+    }
+}
@@ -0,0 +1,277 @@
+package io.flamingock.flags.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.EvalResult;
+import io.flamingock.flags.engine.FlagEvaluator;
+import io.flamingock.flags.engine.FlagSnapshot;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates a fixed set of flags for an NDJSON stream of user contexts.
+ * <p>
+ * The request thread only splits the input into newline-aligned chunks; parsing, evaluation and
+ * serialization of each chunk run on a shared worker pool. At most {@code maxInFlight} chunks are
+ * outstanding per stream, so a slow client stops the input being read rather than buffering it.
+ * <p>
+ * A line that is not valid JSON or has no {@code userId} does not end the stream: it produces one
+ * {@code {"line":n,"error":"..."}} line in place of its results.
+ */
+@Service
+public class BatchEvaluationService {
+
+    private static final int CHUNK_BYTES = 64 * 1024;
+    private static final int MAX_LINE_BYTES = 1024 * 1024;
+    private static final int OUTPUT_BYTES = 8 * 1024;
+
+    record UserContext(String userId, Map<String, String> attributes) {
+    }
+
+    private final FlagSnapshotService snapshotService;
+    private final ObjectReader contextReader;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService workers;
+    private final int maxInFlight;
+
+    public BatchEvaluationService(FlagSnapshotService snapshotService,
+                                  ObjectMapper objectMapper,
+                                  @Value("${flags.batch.parallelism:0}") int parallelism,
+                                  @Value("${flags.batch.max-in-flight-chunks:0}") int maxInFlight) {
+        this.snapshotService = snapshotService;
+        this.objectMapper = objectMapper;
+        this.contextReader = objectMapper.readerFor(UserContext.class);
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.workers = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("flag-batch-", 0).daemon().factory());
+        this.maxInFlight = maxInFlight > 0 ? maxInFlight : threads * 2;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Resolves the requested flags against the current snapshot, so every context in the stream is
+     * evaluated against the same flag definitions.
+     */
+    public List<CompiledFlag> resolve(List<String> flagNames) {
+        FlagSnapshot snapshot = snapshotService.current();
+        List<CompiledFlag> flags = new ArrayList<>(flagNames.size());
+        for (String name : flagNames) {
+            CompiledFlag flag = snapshot.get(name);
+            if (flag == null) {
+                throw new NoSuchElementException("flag not found: " + name);
+            }
+            flags.add(flag);
+        }
+        return flags;
+    }
+
+    public void evaluate(InputStream in, OutputStream out, List<CompiledFlag> flags, boolean ordered) throws IOException {
+        Pipeline pipeline = new Pipeline(ordered);
+        try {
+            byte[] buf = new byte[CHUNK_BYTES];
+            long line = 1;
+            int filled = 0;
+            int n;
+            while ((n = in.read(buf, filled, buf.length - filled)) >= 0) {
+                filled += n;
+                if (filled < buf.length) {
+                    continue;
+                }
+                int cut = lastNewline(buf, filled);
+                if (cut < 0) {
+                    if (buf.length >= MAX_LINE_BYTES) {
+                        throw new IOException("NDJSON line exceeds " + MAX_LINE_BYTES + " bytes");
+                    }
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                    continue;
+                }
+                if (pipeline.size() == maxInFlight) {
+                    out.write(pipeline.next());
+                }
+                byte[] chunk = Arrays.copyOf(buf, cut + 1);
+                long firstLine = line;
+                pipeline.submit(() -> evaluateChunk(chunk, firstLine, flags));
+                line += newlines(chunk);
+                filled -= cut + 1;
+                System.arraycopy(buf, cut + 1, buf, 0, filled);
+            }
+            if (filled > 0) {
+                byte[] chunk = Arrays.copyOf(buf, filled);
+                long firstLine = line;
+                pipeline.submit(() -> evaluateChunk(chunk, firstLine, flags));
+            }
+            while (pipeline.size() > 0) {
+                out.write(pipeline.next());
+            }
+            out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("batch evaluation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("batch evaluation failed", e.getCause());
+        } finally {
+            pipeline.cancel();
+        }
+    }
+
+    private byte[] evaluateChunk(byte[] chunk, long firstLine, List<CompiledFlag> flags) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(OUTPUT_BYTES);
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+            gen.setRootValueSeparator(null);
+            long line = firstLine;
+            int start = 0;
+            for (int i = 0; i < chunk.length; i++) {
+                if (chunk[i] != '\n') {
+                    continue;
+                }
+                writeLine(gen, chunk, start, i - start, line++, flags);
+                start = i + 1;
+            }
+            writeLine(gen, chunk, start, chunk.length - start, line, flags);
+        }
+        return out.toByteArray();
+    }
+
+    private void writeLine(JsonGenerator gen, byte[] chunk, int offset, int length, long line,
+                           List<CompiledFlag> flags) throws IOException {
+        if (isBlank(chunk, offset, length)) {
+            return;
+        }
+        UserContext context;
+        try {
+            context = contextReader.readValue(chunk, offset, length);
+        } catch (JsonProcessingException e) {
+            writeError(gen, line, "invalid JSON: " + e.getOriginalMessage());
+            return;
+        }
+        if (context == null || context.userId() == null || context.userId().isBlank()) {
+            writeError(gen, line, "userId is required");
+            return;
+        }
+        Map<String, String> attrs = context.attributes() != null ? context.attributes() : Map.of();
+        // Shared by this context's flags, so a prerequisite several of them need is computed once.
+        Map<String, EvalResult> memo = null;
+        for (CompiledFlag flag : flags) {
+            if (!flag.prerequisites().isEmpty()) {
+                memo = new HashMap<>();
+                break;
+            }
+        }
+        for (CompiledFlag flag : flags) {
+            boolean enabled = memo != null
+                    ? FlagEvaluator.evaluate(flag, context.userId(), attrs, memo).enabled()
+                    : FlagEvaluator.isEnabled(flag, context.userId(), attrs);
+            gen.writeStartObject();
+            gen.writeStringField("userId", context.userId());
+            gen.writeStringField("flag", flag.name());
+            gen.writeBooleanField("enabled", enabled);
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+        }
+    }
+
+    private static void writeError(JsonGenerator gen, long line, String message) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("line", line);
+        gen.writeStringField("error", message);
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+    }
+
+    /**
+     * Chunks submitted but not yet written. In ordered mode results are handed back in submission
+     * order; otherwise in completion order.
+     */
+    private final class Pipeline {
+
+        private final boolean ordered;
+        private final Deque<Future<byte[]>> queue = new ArrayDeque<>();
+        private final CompletionService<byte[]> completion = new ExecutorCompletionService<>(workers);
+        private final Set<Future<byte[]>> outstanding = new HashSet<>();
+
+        Pipeline(boolean ordered) {
+            this.ordered = ordered;
+        }
+
+        void submit(Callable<byte[]> task) {
+            Future<byte[]> future = ordered ? workers.submit(task) : completion.submit(task);
+            if (ordered) {
+                queue.addLast(future);
+            }
+            outstanding.add(future);
+        }
+
+        byte[] next() throws InterruptedException, ExecutionException {
+            Future<byte[]> future = ordered ? queue.removeFirst() : completion.take();
+            outstanding.remove(future);
+            return future.get();
+        }
+
+        int size() {
+            return outstanding.size();
+        }
+
+        void cancel() {
+            for (Future<byte[]> future : outstanding) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static int lastNewline(byte[] buf, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buf[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int newlines(byte[] buf) {
+        int count = 0;
+        for (byte b : buf) {
+            if (b == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isBlank(byte[] buf, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (buf[i] != ' ' && buf[i] != '\r' && buf[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,82 +1,75 @@
 package io.flamingock.flags.service;
 
-import io.flamingock.flags.model.FeatureFlag;
-import io.flamingock.flags.model.TargetingRule;
-import io.flamingock.flags.repository.FlagRepository;
-import io.flamingock.flags.repository.TargetingRuleRepository;
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.EvalResult;
+import io.flamingock.flags.engine.FlagEvaluator;
+import io.flamingock.flags.engine.FlagSnapshot;
 import org.springframework.stereotype.Service;
 
-import java.nio.ByteBuffer;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.List;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Service
 public class EvaluationService {
 
-    public record EvalResult(boolean enabled, String reason) {
-    }
-
-    private final FlagRepository flagRepository;
-    private final TargetingRuleRepository ruleRepository;
+    private final FlagSnapshotService snapshotService;
+    private final ExposureRecorder exposureRecorder;
 
-    public EvaluationService(FlagRepository flagRepository, TargetingRuleRepository ruleRepository) {
-        this.flagRepository = flagRepository;
-        this.ruleRepository = ruleRepository;
+    public EvaluationService(FlagSnapshotService snapshotService, ExposureRecorder exposureRecorder) {
+        this.snapshotService = snapshotService;
+        this.exposureRecorder = exposureRecorder;
     }
 
-    public EvalResult evaluate(String flagName, String userId, Map<String, String> attrs) {
-        FeatureFlag flag = flagRepository.findById(flagName).orElse(null);
-        if (flag == null) {
-            return new EvalResult(false, "flag not found");
-        }
-
-        if (!flag.isEnabled()) {
-            return new EvalResult(false, "flag disabled");
-        }
+    public EvalResult evaluate(String flagName, String userId, Map<String, String> attrs, boolean explain) {
+        EvalResult result = evaluate(snapshotService.lookup(flagName), userId, attrs, explain);
+        exposureRecorder.record(flagName, userId, result);
+        return result;
+    }
 
-        List<TargetingRule> rules = ruleRepository.findByFlagName(flagName);
-        if (!rules.isEmpty()) {
-            for (TargetingRule rule : rules) {
-                if (matches(rule, attrs)) {
-                    return new EvalResult(true, "targeting rule matched: " + rule.getAttribute() + " " + rule.getOperator() + " " + rule.getValue());
-                }
-            }
-        }
+    public Map<String, EvalResult> evaluateAll(String userId, Map<String, String> attrs, boolean explain) {
+        return evaluateAll(userId, attrs, explain, true);
+    }
 
-        if (flag.getRolloutPercentage() >= 100) {
-            return new EvalResult(true, "rollout 100%");
-        }
+    /**
+     * For requests admitted over the concurrency limit: the same result from the current snapshot,
+     * but with no explanation and no exposure recorded.
+     */
+    public EvalResult evaluateShed(String flagName, String userId, Map<String, String> attrs) {
+        return FlagEvaluator.evaluate(snapshotService.lookup(flagName), userId, attrs);
+    }
 
-        int bucket = bucket(flagName, userId);
-        boolean inRollout = bucket < flag.getRolloutPercentage();
-        return new EvalResult(inRollout, inRollout
-                ? "in rollout bucket " + bucket + " < " + flag.getRolloutPercentage() + "%"
-                : "outside rollout bucket " + bucket + " >= " + flag.getRolloutPercentage() + "%");
+    public Map<String, EvalResult> evaluateAllShed(String userId, Map<String, String> attrs) {
+        return evaluateAll(userId, attrs, false, false);
     }
 
-    private boolean matches(TargetingRule rule, Map<String, String> attrs) {
-        String attrValue = attrs.get(rule.getAttribute());
-        if (attrValue == null) {
-            return false;
+    /**
+     * When flags require others, one memo serves the whole request, so each is computed once.
+     */
+    private Map<String, EvalResult> evaluateAll(String userId, Map<String, String> attrs, boolean explain,
+                                                boolean record) {
+        FlagSnapshot snapshot = snapshotService.current();
+        Map<String, EvalResult> results = new LinkedHashMap<>(Math.max(16, snapshot.size() * 2));
+        Map<String, EvalResult> memo = snapshot.hasPrerequisites()
+                ? new HashMap<>(Math.max(16, snapshot.size() * 2))
+                : null;
+        for (CompiledFlag flag : snapshot.flags()) {
+            EvalResult result = memo != null
+                    ? FlagEvaluator.evaluate(flag, userId, attrs, memo)
+                    : FlagEvaluator.evaluate(flag, userId, attrs);
+            if (explain) {
+                result = FlagEvaluator.explain(flag, result);
+            }
+            if (record) {
+                exposureRecorder.record(flag.name(), userId, result);
+            }
+            results.put(flag.name(), result);
         }
-        return switch (rule.getOperator()) {
-            case "equals" -> attrValue.equals(rule.getValue());
-            case "contains" -> attrValue.contains(rule.getValue());
-            case "in" -> List.of(rule.getValue().split(",")).contains(attrValue);
-            case "starts_with" -> attrValue.startsWith(rule.getValue());
-            default -> false;
-        };
+        return results;
     }
 
-    private int bucket(String flagName, String userId) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest((flagName + ":" + userId).getBytes());
-            return Math.floorMod(ByteBuffer.wrap(hash).getInt(), 100);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        }
+    private static EvalResult evaluate(CompiledFlag flag, String userId, Map<String, String> attrs, boolean explain) {
+        EvalResult result = FlagEvaluator.evaluate(flag, userId, attrs);
+        return explain ? FlagEvaluator.explain(flag, result) : result;
     }
 }
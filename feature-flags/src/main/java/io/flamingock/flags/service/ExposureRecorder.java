@@ -0,0 +1,153 @@
+package io.flamingock.flags.service;
+
+import io.flamingock.flags.engine.EvalResult;
+import io.flamingock.flags.repository.ExposureRepository;
+import io.flamingock.flags.repository.ExposureRepository.Exposure;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records which users saw which flag result without touching the database on the request thread.
+ * {@link #record} hands the exposure to a lock-free ring buffer, and a single background thread
+ * writes it to {@code flag_exposures} in batches. When the buffer is full the exposure is dropped
+ * and counted rather than blocking the caller.
+ * <p>
+ * Repeats of the same (flag, user, result) within {@code flags.exposures.dedup-window} are skipped.
+ * The check is a lossy table of 64-bit fingerprints: a slot collision lets a duplicate through,
+ * which the analysis side tolerates, but never hides a distinct exposure unless the whole
+ * fingerprint collides.
+ */
+@Service
+public class ExposureRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(ExposureRecorder.class);
+
+    private final ExposureRepository repository;
+    private final ExposureBuffer buffer;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int dedupSlots;
+    private final long dedupWindowMillis;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("flag-exposures").daemon().factory());
+    private final Counter recorded;
+    private final Counter deduplicated;
+    private final Counter dropped;
+    private final Counter written;
+    private final Counter failed;
+    private volatile AtomicLongArray seen;
+    private long windowStart;
+
+    public ExposureRecorder(ExposureRepository repository, MeterRegistry registry,
+                            @Value("${flags.exposures.enabled:true}") boolean enabled,
+                            @Value("${flags.exposures.capacity:65536}") int capacity,
+                            @Value("${flags.exposures.batch-size:1000}") int batchSize,
+                            @Value("${flags.exposures.flush-interval:1000}") long flushIntervalMillis,
+                            @Value("${flags.exposures.dedup-window:60000}") long dedupWindowMillis,
+                            @Value("${flags.exposures.dedup-slots:65536}") int dedupSlots) {
+        this.repository = repository;
+        this.buffer = new ExposureBuffer(capacity);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.dedupSlots = Integer.highestOneBit(Math.max(2, dedupSlots - 1)) << 1;
+        this.dedupWindowMillis = dedupWindowMillis;
+        this.seen = new AtomicLongArray(this.dedupSlots);
+        this.windowStart = System.currentTimeMillis();
+        this.recorded = outcome(registry, "recorded");
+        this.deduplicated = outcome(registry, "deduplicated");
+        this.dropped = outcome(registry, "dropped");
+        this.written = outcome(registry, "written");
+        this.failed = outcome(registry, "failed");
+        Gauge.builder("flags.exposures.queued", buffer, ExposureBuffer::size).register(registry);
+        if (enabled) {
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        if (flusher.awaitTermination(5, TimeUnit.SECONDS)) {
+            flush();
+        }
+    }
+
+    public void record(String flagName, String userId, EvalResult result) {
+        if (!enabled || result.reason() == EvalResult.Reason.FLAG_NOT_FOUND || userId == null) {
+            return;
+        }
+        long fingerprint = fingerprint(flagName, userId, result);
+        AtomicLongArray seen = this.seen;
+        int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & (dedupSlots - 1);
+        if (seen.get(slot) == fingerprint) {
+            deduplicated.increment();
+            return;
+        }
+        seen.set(slot, fingerprint);
+        Exposure exposure = new Exposure(flagName, userId, result.enabled(), result.reason().name(), result.ruleId(),
+                System.currentTimeMillis());
+        if (buffer.offer(exposure)) {
+            recorded.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    void flush() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= dedupWindowMillis) {
+            seen = new AtomicLongArray(dedupSlots);
+            windowStart = now;
+        }
+        List<Exposure> batch = new ArrayList<>(Math.min(batchSize, buffer.capacity()));
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            try {
+                repository.insertAll(batch);
+                written.increment(batch.size());
+            } catch (RuntimeException e) {
+                failed.increment(batch.size());
+                log.warn("Dropping {} exposures that could not be written", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * FNV-1a over the flag name, user id and result, so repeated evaluations hash without allocating.
+     */
+    private static long fingerprint(String flagName, String userId, EvalResult result) {
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, flagName);
+        hash = (hash ^ 0xff) * 0x100000001b3L;
+        hash = mix(hash, userId);
+        hash = (hash ^ result.reason().ordinal()) * 0x100000001b3L;
+        if (result.ruleId() != null) {
+            hash = (hash ^ result.ruleId().getLeastSignificantBits()) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static Counter outcome(MeterRegistry registry, String outcome) {
+        return Counter.builder("flags.exposures").tag("outcome", outcome).register(registry);
+    }
+}
@@ -0,0 +1,134 @@
+package io.flamingock.flags.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps this node's snapshot in step with writes made on other replicas. Triggers on
+ * {@code feature_flags} and {@code targeting_rules} append to {@code flag_changes}; each node
+ * polls that table and reloads only the flags that appear in it. Segment membership changes are
+ * read the same way from {@code segment_changes}.
+ * <p>
+ * The cursor is a transaction id horizon rather than the {@code version} sequence: sequence values
+ * are handed out before commit, so a lower version can become visible after a higher one. Reading
+ * only rows written by transactions older than the oldest one still running means nothing is ever
+ * skipped.
+ * <p>
+ * Each hydration and poll is one read-only transaction, so the horizon, the changes and the reloaded
+ * flags all come from the same server. With a read replica configured that is the replica, and a
+ * change is applied once the replica has replayed it.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class FlagChangeFeed implements ApplicationRunner {
+
+    private static final String HORIZON = "SELECT pg_snapshot_xmin(pg_current_snapshot())::text::bigint";
+
+    private static final String CHANGES = """
+            SELECT flag_name, changed_at, clock_timestamp() AS polled_at
+            FROM flag_changes
+            WHERE txid >= ? AND txid < ?
+            ORDER BY version
+            """;
+
+    private static final String SEGMENT_CHANGES = """
+            SELECT segment_name, member_hash
+            FROM segment_changes
+            WHERE txid >= ? AND txid < ?
+            """;
+
+    private record ChangeRow(String flagName, OffsetDateTime changedAt, OffsetDateTime polledAt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FlagSnapshotService snapshotService;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final Timer lag;
+
+    public FlagChangeFeed(JdbcTemplate jdbcTemplate, FlagSnapshotService snapshotService, MeterRegistry registry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotService = snapshotService;
+        this.lag = Timer.builder("flags.sync.lag")
+                .description("Time from a flag change being committed to this node serving it")
+                .publishPercentileHistogram()
+                .register(registry);
+        Gauge.builder("flags.sync.cursor", cursor, AtomicLong::get).register(registry);
+    }
+
+    /**
+     * Hydrates the snapshot after Flamingock has applied its changes and before the application is
+     * reported ready. The horizon is read first so that any change racing with the full load is
+     * replayed by the next poll.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void run(ApplicationArguments args) {
+        long horizon = horizon();
+        snapshotService.rebuild();
+        cursor.set(horizon);
+    }
+
+    @Scheduled(fixedDelayString = "${flags.sync.poll-interval:500}")
+    @Transactional(readOnly = true)
+    public void poll() {
+        long from = cursor.get();
+        if (from < 0) {
+            return;
+        }
+        long to = horizon();
+        if (to <= from) {
+            return;
+        }
+        List<ChangeRow> rows = jdbcTemplate.query(CHANGES,
+                (rs, i) -> new ChangeRow(rs.getString("flag_name"),
+                        rs.getObject("changed_at", OffsetDateTime.class),
+                        rs.getObject("polled_at", OffsetDateTime.class)),
+                from, to);
+        if (!rows.isEmpty()) {
+            Set<String> changed = new LinkedHashSet<>();
+            for (ChangeRow row : rows) {
+                changed.add(row.flagName());
+            }
+            long started = System.nanoTime();
+            snapshotService.refresh(changed);
+            Duration reload = Duration.ofNanos(System.nanoTime() - started);
+            for (ChangeRow row : rows) {
+                lag.record(Duration.between(row.changedAt(), row.polledAt()).plus(reload));
+            }
+        }
+        Map<String, List<Long>> touched = new HashMap<>();
+        jdbcTemplate.query(SEGMENT_CHANGES, rs -> {
+            touched.computeIfAbsent(rs.getString(1), k -> new ArrayList<>()).add(rs.getLong(2));
+        }, from, to);
+        if (!touched.isEmpty()) {
+            Map<String, long[]> hashes = new HashMap<>();
+            touched.forEach((name, members) -> hashes.put(name, members.stream().mapToLong(Long::longValue).toArray()));
+            snapshotService.refreshSegments(hashes);
+        }
+        cursor.set(to);
+    }
+
+    private long horizon() {
+        Long horizon = jdbcTemplate.queryForObject(HORIZON, Long.class);
+        return horizon != null ? horizon : 0;
+    }
+}
@@ -0,0 +1,244 @@
+package io.flamingock.flags.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.FlagSnapshot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes flag changes to server-sent event subscribers. A new subscriber gets a {@code snapshot}
+ * event, then one {@code flag-updated} or {@code flag-removed} event per changed flag.
+ * <p>
+ * Every event id is {@code <epoch>-<version>}, where the epoch identifies this process's
+ * snapshot versions. A client
+ * reconnecting with a {@code Last-Event-ID} from this epoch gets only the deltas it missed, as long
+ * as they are still in the bounded history; otherwise it gets a fresh snapshot.
+ * <p>
+ * Events are ordered on a single dispatcher thread, which only appends them to each subscriber's
+ * bounded queue. A virtual thread drains a queue while it has events, so one slow client blocks
+ * no one else, and idle subscribers hold no thread. A subscriber whose queue fills up is completed
+ * and reconnects with its {@code Last-Event-ID}.
+ */
+@Service
+public class FlagEventBroadcaster {
+
+    record FlagRemoved(String name) {
+    }
+
+    private record Delta(long version, List<Set<DataWithMediaType>> events) {
+    }
+
+    private static final Set<DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("heartbeat").build();
+
+    private final String epoch;
+    private final ObjectMapper objectMapper;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Deque<Delta> history = new ArrayDeque<>();
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("flag-events").daemon().factory());
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("flag-events-send-", 0).factory());
+    private final int historySize;
+    private final int queueSize;
+    private final long timeoutMillis;
+    private FlagSnapshot published = FlagSnapshot.EMPTY;
+
+    public FlagEventBroadcaster(FlagSnapshotService snapshotService, ObjectMapper objectMapper, MeterRegistry registry,
+                                @Value("${flags.stream.history-size:1024}") int historySize,
+                                @Value("${flags.stream.queue-size:256}") int queueSize,
+                                @Value("${flags.stream.timeout:1800000}") long timeoutMillis) {
+        this.epoch = snapshotService.epoch();
+        this.objectMapper = objectMapper;
+        this.historySize = historySize;
+        this.queueSize = queueSize;
+        this.timeoutMillis = timeoutMillis;
+        Gauge.builder("flags.stream.subscribers", subscribers, Set::size).register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    public SseEmitter subscribe(String lastEventId) {
+        return subscribe(lastEventId, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(String lastEventId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        dispatcher.execute(() -> {
+            List<Set<DataWithMediaType>> missed = missedSince(lastEventId);
+            if (missed != null && missed.size() < queueSize) {
+                missed.forEach(subscriber::offer);
+            } else {
+                subscriber.offer(snapshotEvent(published));
+            }
+            subscribers.add(subscriber);
+        });
+        return emitter;
+    }
+
+    @EventListener
+    public void onSnapshotChanged(FlagSnapshotChanged change) {
+        dispatcher.execute(() -> {
+            FlagSnapshot snapshot = change.snapshot();
+            published = snapshot;
+            if (change.full()) {
+                history.clear();
+                broadcast(snapshotEvent(snapshot));
+                return;
+            }
+            List<Set<DataWithMediaType>> events = new ArrayList<>(change.changed().size());
+            for (String name : change.changed()) {
+                CompiledFlag flag = snapshot.get(name);
+                events.add(flag != null
+                        ? event(snapshot.version(), "flag-updated", flag.definition())
+                        : event(snapshot.version(), "flag-removed", new FlagRemoved(name)));
+            }
+            history.addLast(new Delta(snapshot.version(), events));
+            while (history.size() > historySize) {
+                history.removeFirst();
+            }
+            for (Set<DataWithMediaType> event : events) {
+                broadcast(event);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${flags.stream.heartbeat-interval:15000}")
+    public void heartbeat() {
+        dispatcher.execute(() -> broadcast(HEARTBEAT));
+    }
+
+    private void broadcast(Set<DataWithMediaType> event) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.offer(event)) {
+                // Completing waits for a send in progress, so it happens off the dispatcher.
+                subscribers.remove(subscriber);
+                senders.execute(subscriber.emitter::complete);
+            }
+        }
+    }
+
+    /**
+     * Returns the events a client that last saw {@code lastEventId} has missed, or {@code null} when
+     * they cannot be replayed and the client needs a full snapshot.
+     */
+    private List<Set<DataWithMediaType>> missedSince(String lastEventId) {
+        if (lastEventId == null || !lastEventId.startsWith(epoch + "-")) {
+            return null;
+        }
+        long version;
+        try {
+            version = Long.parseLong(lastEventId.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (version >= published.version()) {
+            return List.of();
+        }
+        if (history.isEmpty() || history.peekFirst().version() > version + 1) {
+            return null;
+        }
+        List<Set<DataWithMediaType>> missed = new ArrayList<>();
+        for (Delta delta : history) {
+            if (delta.version() > version) {
+                missed.addAll(delta.events());
+            }
+        }
+        return missed;
+    }
+
+    /**
+     * An emitter and the events queued for it. At most one drain runs at a time, started by the
+     * offer that finds the queue idle.
+     */
+    private final class Subscriber implements Runnable {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<Set<DataWithMediaType>> queue = new ArrayBlockingQueue<>(queueSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queues {@code event}, or returns {@code false} if the queue is full.
+         */
+        boolean offer(Set<DataWithMediaType> event) {
+            if (!queue.offer(event)) {
+                return false;
+            }
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            do {
+                Set<DataWithMediaType> event;
+                while ((event = queue.poll()) != null) {
+                    try {
+                        emitter.send(event);
+                    } catch (IOException | IllegalStateException e) {
+                        subscribers.remove(this);
+                        emitter.completeWithError(e);
+                        return;
+                    }
+                }
+                draining.set(false);
+                // An offer between the last poll and the reset saw a drain running and did not start one.
+            } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+    }
+
+    private Set<DataWithMediaType> snapshotEvent(FlagSnapshot snapshot) {
+        return event(snapshot.version(), "snapshot", snapshot.definition());
+    }
+
+    /**
+     * Serializes the payload once, so broadcasting to thousands of subscribers only copies bytes.
+     */
+    private Set<DataWithMediaType> event(long version, String name, Object data) {
+        try {
+            return SseEmitter.event()
+                    .id(epoch + "-" + version)
+                    .name(name)
+                    .data(objectMapper.writeValueAsString(data), MediaType.APPLICATION_JSON)
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
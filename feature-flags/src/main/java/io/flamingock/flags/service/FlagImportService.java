@@ -0,0 +1,160 @@
+package io.flamingock.flags.service;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.flamingock.flags.engine.BucketingAlgorithm;
+import io.flamingock.flags.engine.CompiledRule;
+import io.flamingock.flags.engine.RuleOperator;
+import io.flamingock.flags.repository.FlagImportRepository;
+import io.flamingock.flags.repository.FlagImportRepository.ImportCounts;
+import io.flamingock.flags.repository.FlagImportRepository.ImportedFlag;
+import io.flamingock.flags.repository.FlagImportRepository.ImportedRule;
+import io.flamingock.flags.repository.SegmentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Imports an NDJSON stream of flags, one flag with its rules and prerequisites per line. Lines are
+ * parsed and validated as the repository consumes them, so the input is never held in memory, and
+ * the first invalid line rolls back everything imported before it.
+ */
+@Service
+public class FlagImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(FlagImportService.class);
+
+    public record ImportSummary(int flags, int rules, int removedRules, long snapshotVersion, long elapsedMillis) {
+    }
+
+    private final FlagImportRepository importRepository;
+    private final SegmentRepository segmentRepository;
+    private final FlagSnapshotService snapshotService;
+    private final ObjectReader flagReader;
+
+    public FlagImportService(FlagImportRepository importRepository, SegmentRepository segmentRepository,
+                             FlagSnapshotService snapshotService, ObjectMapper objectMapper) {
+        this.importRepository = importRepository;
+        this.segmentRepository = segmentRepository;
+        this.snapshotService = snapshotService;
+        this.flagReader = objectMapper.readerFor(ImportedFlag.class);
+    }
+
+    /**
+     * @throws IllegalArgumentException naming the line, if a line cannot be parsed or imported
+     */
+    public ImportSummary importNdjson(InputStream in) throws IOException {
+        long started = System.nanoTime();
+        Set<String> names = new HashSet<>();
+        ImportCounts counts;
+        try (MappingIterator<ImportedFlag> lines = flagReader.readValues(in)) {
+            counts = importRepository.importAll(new ValidatingIterator(lines, names, segmentRepository.names()),
+                    BucketingAlgorithm.CURRENT_VERSION);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        // One refresh for the whole import: a single version bump, and a full rebuild when most
+        // flags changed.
+        snapshotService.refresh(names);
+        long elapsed = (System.nanoTime() - started) / 1_000_000;
+        log.info("Imported {} flags and {} rules ({} rules removed) in {} ms",
+                counts.flags(), counts.rules(), counts.removedRules(), elapsed);
+        return new ImportSummary(counts.flags(), counts.rules(), counts.removedRules(),
+                snapshotService.current().version(), elapsed);
+    }
+
+    private static final class ValidatingIterator implements Iterator<ImportedFlag> {
+
+        private final MappingIterator<ImportedFlag> lines;
+        private final Set<String> names;
+        private final Set<String> segments;
+
+        ValidatingIterator(MappingIterator<ImportedFlag> lines, Set<String> names, Set<String> segments) {
+            this.lines = lines;
+            this.names = names;
+            this.segments = segments;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return lines.hasNextValue();
+            } catch (JsonProcessingException e) {
+                throw invalid(e.getLocation(), e.getOriginalMessage());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public ImportedFlag next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ImportedFlag flag;
+            try {
+                flag = lines.nextValue();
+            } catch (JsonProcessingException e) {
+                throw invalid(e.getLocation(), e.getOriginalMessage());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            JsonLocation location = lines.getCurrentLocation();
+            if (flag.name() == null || flag.name().isBlank()) {
+                throw invalid(location, "name is required");
+            }
+            if (!names.add(flag.name())) {
+                throw invalid(location, "flag " + flag.name() + " appears more than once");
+            }
+            Integer basisPoints = flag.rolloutBasisPoints();
+            if (basisPoints != null && (basisPoints < 0 || basisPoints > BucketingAlgorithm.BASIS_POINTS)) {
+                throw invalid(location, "rolloutBasisPoints must be between 0 and " + BucketingAlgorithm.BASIS_POINTS);
+            }
+            if (flag.bucketingVersion() != null) {
+                try {
+                    BucketingAlgorithm.forVersion(flag.bucketingVersion());
+                } catch (IllegalArgumentException e) {
+                    throw invalid(location, e.getMessage());
+                }
+            }
+            for (String prerequisite : flag.prerequisites() != null ? flag.prerequisites() : List.<String>of()) {
+                if (prerequisite == null || prerequisite.isBlank()) {
+                    throw invalid(location, "prerequisites must be flag names");
+                }
+            }
+            Set<UUID> ruleIds = new HashSet<>();
+            for (ImportedRule rule : flag.rules() != null ? flag.rules() : List.<ImportedRule>of()) {
+                if (rule.id() != null && !ruleIds.add(rule.id())) {
+                    throw invalid(location, "rule " + rule.id() + " appears more than once");
+                }
+                try {
+                    CompiledRule.compile(rule.id(), rule.attribute(), rule.operator(), rule.value());
+                } catch (IllegalArgumentException e) {
+                    throw invalid(location, e.getMessage());
+                }
+                if (RuleOperator.IN_SEGMENT.code().equals(rule.operator()) && !segments.contains(rule.value())) {
+                    throw invalid(location, "no segment named " + rule.value());
+                }
+            }
+            return flag;
+        }
+
+        private static IllegalArgumentException invalid(JsonLocation location, String message) {
+            String line = location != null ? String.valueOf(location.getLineNr()) : "?";
+            return new IllegalArgumentException("line " + line + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package io.flamingock.flags.service;
+
+import io.flamingock.flags.engine.FlagSnapshot;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Published after a new snapshot is swapped in. {@code changed} names the flags that were reloaded,
+ * or is empty when the whole snapshot was rebuilt.
+ */
+public record FlagSnapshotChanged(FlagSnapshot snapshot, Set<String> changed, boolean full) {
+
+    static FlagSnapshotChanged full(FlagSnapshot snapshot) {
+        return new FlagSnapshotChanged(snapshot, Set.of(), true);
+    }
+
+    static FlagSnapshotChanged partial(FlagSnapshot snapshot, Collection<String> changed) {
+        return new FlagSnapshotChanged(snapshot, Set.copyOf(changed), false);
+    }
+}
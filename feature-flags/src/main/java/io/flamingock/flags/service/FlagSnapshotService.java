@@ -0,0 +1,176 @@
+package io.flamingock.flags.service;
+
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.FlagDefinition;
+import io.flamingock.flags.engine.FlagSnapshot;
+import io.flamingock.flags.engine.Segment;
+import io.flamingock.flags.engine.SegmentTable;
+import io.flamingock.flags.repository.FlagDefinitionRepository;
+import io.flamingock.flags.repository.SegmentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the {@link FlagSnapshot} that evaluation reads from. Readers only dereference the current
+ * snapshot; writers rebuild it from Postgres and swap it in. Hydration at startup and refreshes
+ * for writes made on other nodes are driven by {@link FlagChangeFeed}.
+ * <p>
+ * Reloads are not read-only, so a refresh after a write on this node reads the primary and sees
+ * that write. {@link FlagChangeFeed} calls them inside its own read-only transaction, which they
+ * join, so the feed's reloads go to the replica: it only acts on changes the replica has already
+ * replayed.
+ */
+@Service
+public class FlagSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(FlagSnapshotService.class);
+
+    /**
+     * Above this many changed members, reloading the whole segment is cheaper than checking each.
+     */
+    private static final int SEGMENT_RELOAD_THRESHOLD = 10_000;
+
+    /**
+     * Above this many changed flags, reloading every flag is cheaper than looking each up by name.
+     */
+    private static final int FULL_REBUILD_THRESHOLD = 1_000;
+
+    private final FlagDefinitionRepository definitionRepository;
+    private final SegmentRepository segmentRepository;
+    private final SegmentTable segments = new SegmentTable();
+    private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+    private final ApplicationEventPublisher events;
+    private final AtomicReference<FlagSnapshot> current = new AtomicReference<>(FlagSnapshot.EMPTY);
+    private final Timer rebuildTimer;
+    private final Counter hits;
+    private final Counter misses;
+
+    public FlagSnapshotService(FlagDefinitionRepository definitionRepository, SegmentRepository segmentRepository,
+                               ApplicationEventPublisher events, MeterRegistry registry) {
+        this.definitionRepository = definitionRepository;
+        this.segmentRepository = segmentRepository;
+        this.events = events;
+        this.rebuildTimer = Timer.builder("flags.snapshot.rebuild").register(registry);
+        this.hits = Counter.builder("flags.snapshot.lookups").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("flags.snapshot.lookups").tag("result", "miss").register(registry);
+        Gauge.builder("flags.snapshot.version", current, ref -> ref.get().version()).register(registry);
+        Gauge.builder("flags.snapshot.size", current, ref -> ref.get().size()).register(registry);
+    }
+
+    /**
+     * Identifies this process's sequence of snapshot versions. Versions are only comparable within
+     * one epoch: another replica, or this one after a restart, numbers its snapshots independently.
+     */
+    public String epoch() {
+        return epoch;
+    }
+
+    public FlagSnapshot current() {
+        return current.get();
+    }
+
+    public CompiledFlag lookup(String flagName) {
+        CompiledFlag flag = current.get().get(flagName);
+        (flag != null ? hits : misses).increment();
+        return flag;
+    }
+
+    @Transactional
+    public synchronized void rebuild() {
+        rebuildTimer.record(() -> {
+            List<Segment> loaded = new ArrayList<>();
+            segmentRepository.loadAll().forEach((name, members) -> loaded.add(Segment.of(name, members)));
+            segments.replaceAll(loaded);
+            List<CompiledFlag> flags = new ArrayList<>();
+            for (FlagDefinition definition : definitionRepository.findAll()) {
+                flags.add(compile(definition));
+            }
+            current.set(FlagSnapshot.of(current.get().version() + 1, flags, segments));
+        });
+        events.publishEvent(FlagSnapshotChanged.full(current.get()));
+    }
+
+    @Transactional
+    public void refresh(String flagName) {
+        refresh(Set.of(flagName));
+    }
+
+    @Transactional
+    public synchronized void refresh(Collection<String> flagNames) {
+        if (flagNames.isEmpty()) {
+            return;
+        }
+        if (flagNames.size() > FULL_REBUILD_THRESHOLD) {
+            rebuild();
+            return;
+        }
+        rebuildTimer.record(() -> {
+            Map<String, CompiledFlag> reloaded = new HashMap<>();
+            for (FlagDefinition definition : definitionRepository.findByNames(flagNames)) {
+                reloaded.put(definition.name(), compile(definition));
+            }
+            FlagSnapshot snapshot = current.get();
+            current.set(snapshot.with(snapshot.version() + 1, flagNames, reloaded));
+        });
+        events.publishEvent(FlagSnapshotChanged.partial(current.get(), flagNames));
+    }
+
+    /**
+     * Brings the in-memory segments up to date with the members in {@code touched}, which were added
+     * or removed since the last refresh. Only those members are re-read, so flags are not recompiled
+     * and a large segment is not reloaded for a small change.
+     */
+    @Transactional
+    public synchronized void refreshSegments(Map<String, long[]> touched) {
+        if (touched.isEmpty()) {
+            return;
+        }
+        rebuildTimer.record(() -> {
+            touched.forEach((name, hashes) -> {
+                Segment segment = segments.get(name);
+                if (segment == null || hashes.length > SEGMENT_RELOAD_THRESHOLD) {
+                    long[] members = segmentRepository.load(name);
+                    if (members == null) {
+                        segments.remove(name);
+                    } else {
+                        segments.put(Segment.of(name, members));
+                    }
+                    return;
+                }
+                long[] present = segmentRepository.present(name, hashes);
+                segments.put(segment.with(present, absent(hashes, present)));
+            });
+            FlagSnapshot snapshot = current.get();
+            current.set(snapshot.with(snapshot.version() + 1, List.of(), Map.of()));
+        });
+        events.publishEvent(FlagSnapshotChanged.partial(current.get(), Set.of()));
+    }
+
+    private static long[] absent(long[] hashes, long[] present) {
+        long[] sortedPresent = present.clone();
+        Arrays.sort(sortedPresent);
+        return Arrays.stream(hashes).filter(hash -> Arrays.binarySearch(sortedPresent, hash) < 0).toArray();
+    }
+
+    private CompiledFlag compile(FlagDefinition definition) {
+        return CompiledFlag.compile(definition, segments, (rule, e) ->
+                log.warn("Skipping targeting rule {} on flag '{}': {}", rule.id(), definition.name(), e.getMessage()));
+    }
+}
@@ -0,0 +1,73 @@
+package io.flamingock.flags.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.flamingock.flags.repository.FlagCursorRepository;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes flag and rule listings as NDJSON straight from a database cursor, one row at a time, so
+ * memory use does not depend on how many rows there are.
+ */
+@Service
+public class FlagStreamService {
+
+    private final FlagCursorRepository cursorRepository;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter rowWriter;
+
+    public FlagStreamService(FlagCursorRepository cursorRepository, ObjectMapper objectMapper) {
+        this.cursorRepository = cursorRepository;
+        this.objectMapper = objectMapper;
+        // The servlet container buffers the response; flushing per row would send a packet per row.
+        this.rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public void writeFlags(OutputStream out) throws IOException {
+        try (JsonGenerator gen = generator(out)) {
+            cursorRepository.forEachFlag(row -> writeLine(gen, row));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public void writeRules(String flagName, OutputStream out) throws IOException {
+        try (JsonGenerator gen = generator(out)) {
+            cursorRepository.forEachRule(flagName, row -> writeLine(gen, row));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Every flag with its rules, one flag per line, in the format {@link FlagImportService} reads.
+     */
+    public void writeExport(OutputStream out) throws IOException {
+        try (JsonGenerator gen = generator(out)) {
+            cursorRepository.forEachFlagWithRules(flag -> writeLine(gen, flag));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private JsonGenerator generator(OutputStream out) throws IOException {
+        JsonGenerator gen = objectMapper.getFactory().createGenerator(out);
+        gen.setRootValueSeparator(null);
+        return gen;
+    }
+
+    private void writeLine(JsonGenerator gen, Object row) {
+        try {
+            rowWriter.writeValue(gen, row);
+            gen.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
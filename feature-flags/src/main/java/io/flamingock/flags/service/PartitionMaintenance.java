@@ -0,0 +1,247 @@
+package io.flamingock.flags.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rotates the daily partitions of {@code flag_exposures}, {@code flag_changes} and
+ * {@code segment_changes}: creates the next {@code flags.partitions.precreate-days} days ahead of
+ * time, and detaches and drops partitions older than each table's retention. Runs once the
+ * application is ready, which is after Flamingock has created the tables and the function, and then
+ * every {@code flags.partitions.maintenance-interval}. A run that fails, for instance against a
+ * schema Flamingock has not finished, is logged and retried on the next rotation. The migrations
+ * create partitions for the days after they run, so nothing is written without a partition
+ * meanwhile. Replicas take an advisory lock so only one of them rotates at a time.
+ * <p>
+ * There is no default partition: while one exists Postgres refuses {@code DETACH ... CONCURRENTLY},
+ * so expiring a day would block writers. If no node has rotated for longer than
+ * {@code precreate-days}, writers create the day they need themselves (see
+ * {@code _0015__CreateMissingPartitions}), each first write of the day briefly locking the table
+ * against other writers. The last day covered by every table is published as
+ * {@code flags.partitions.days-ahead} and checked by this health indicator, which reports down
+ * once tomorrow has no partition.
+ */
+@Component
+public class PartitionMaintenance implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenance.class);
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final String LOCK = "SELECT pg_try_advisory_lock(hashtext('flag-partitions'))";
+    private static final String UNLOCK = "SELECT pg_advisory_unlock(hashtext('flag-partitions'))";
+
+    private static final String PARTITIONS = """
+            SELECT c.relname, i.inhdetachpending
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = ?::regclass
+            """;
+
+    private record Partitioned(String table, int retentionDays) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int precreateDays;
+    private final List<Partitioned> tables;
+    private final AtomicReference<LocalDate> coveredThrough = new AtomicReference<>();
+
+    public PartitionMaintenance(JdbcTemplate jdbcTemplate, MeterRegistry registry,
+                                @Value("${flags.partitions.precreate-days:7}") int precreateDays,
+                                @Value("${flags.partitions.exposures-retention-days:90}") int exposuresRetentionDays,
+                                @Value("${flags.partitions.changes-retention-days:30}") int changesRetentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.precreateDays = precreateDays;
+        this.tables = List.of(
+                new Partitioned("flag_exposures", exposuresRetentionDays),
+                new Partitioned("flag_changes", changesRetentionDays),
+                new Partitioned("segment_changes", changesRetentionDays));
+        Gauge.builder("flags.partitions.days-ahead", this, m -> {
+                    Long days = m.daysAhead();
+                    return days == null ? Double.NaN : days;
+                })
+                .register(registry);
+    }
+
+    /**
+     * Not an {@code ApplicationRunner}: runner order relative to Flamingock's own is not something
+     * to rely on, while the ready event comes after every runner.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        rotate();
+    }
+
+    @Scheduled(initialDelayString = "${flags.partitions.maintenance-interval:3600000}",
+            fixedDelayString = "${flags.partitions.maintenance-interval:3600000}")
+    public void rotate() {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) this::maintain);
+        } catch (DataAccessException e) {
+            log.warn("Partition maintenance failed; will retry on the next run", e);
+        }
+        Long days = daysAhead();
+        if (days == null || days < 1) {
+            log.error("Partitions cover only through {}; writers will create missing days themselves",
+                    coveredThrough.get());
+        }
+    }
+
+    @Override
+    public Health health() {
+        LocalDate through = coveredThrough.get();
+        if (through == null) {
+            return Health.down().withDetail("reason", "partition coverage not read yet").build();
+        }
+        long days = daysAhead();
+        return (days < 1 ? Health.down() : Health.up())
+                .withDetail("coveredThrough", through.toString())
+                .withDetail("daysAhead", days)
+                .build();
+    }
+
+    /** Whole days after today that every partitioned table can take writes for. */
+    Long daysAhead() {
+        LocalDate through = coveredThrough.get();
+        return through == null ? null : ChronoUnit.DAYS.between(LocalDate.now(ZoneOffset.UTC), through);
+    }
+
+    private Void maintain(Connection connection) throws SQLException {
+        if (!queryBoolean(connection, LOCK)) {
+            log.debug("Another node is maintaining partitions");
+            coveredThrough.set(lastCoveredDay(connection));
+            return null;
+        }
+        try {
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            for (Partitioned partitioned : tables) {
+                int created = createPartitions(connection, partitioned.table(), today, today.plusDays(precreateDays));
+                int dropped = dropPartitions(connection, partitioned.table(), today.minusDays(partitioned.retentionDays()));
+                if (created > 0 || dropped > 0) {
+                    log.info("{}: created {} and dropped {} daily partitions", partitioned.table(), created, dropped);
+                }
+            }
+            coveredThrough.set(lastCoveredDay(connection));
+        } finally {
+            queryBoolean(connection, UNLOCK);
+        }
+        return null;
+    }
+
+    /**
+     * The last day every table has an attached partition for. Only the last day is checked, since
+     * rotation creates days in order; a gap would have to come from a partition dropped by hand.
+     */
+    private LocalDate lastCoveredDay(Connection connection) throws SQLException {
+        LocalDate covered = null;
+        for (Partitioned partitioned : tables) {
+            LocalDate last = null;
+            try (PreparedStatement ps = connection.prepareStatement(PARTITIONS)) {
+                ps.setString(1, partitioned.table());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        LocalDate day = dayOf(partitioned.table(), rs.getString(1));
+                        if (day != null && !rs.getBoolean(2) && (last == null || day.isAfter(last))) {
+                            last = day;
+                        }
+                    }
+                }
+            }
+            if (last == null) {
+                return null;
+            }
+            covered = covered == null || last.isBefore(covered) ? last : covered;
+        }
+        return covered;
+    }
+
+    private int createPartitions(Connection connection, String table, LocalDate from, LocalDate to) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT create_daily_partitions(?, ?, ?)")) {
+            ps.setString(1, table);
+            ps.setDate(2, Date.valueOf(from));
+            ps.setDate(3, Date.valueOf(to));
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Drops every partition whose whole day is before {@code cutoff}. A detach that was interrupted
+     * part-way is finalized first.
+     */
+    private int dropPartitions(Connection connection, String table, LocalDate cutoff) throws SQLException {
+        List<String> expired = new ArrayList<>();
+        List<String> pending = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(PARTITIONS)) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String partition = rs.getString(1);
+                    LocalDate day = dayOf(table, partition);
+                    if (day == null || !day.isBefore(cutoff)) {
+                        continue;
+                    }
+                    (rs.getBoolean(2) ? pending : expired).add(partition);
+                }
+            }
+        }
+        try (Statement stmt = connection.createStatement()) {
+            for (String partition : pending) {
+                stmt.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition + " FINALIZE");
+                stmt.execute("DROP TABLE " + partition);
+            }
+            for (String partition : expired) {
+                stmt.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition + " CONCURRENTLY");
+                stmt.execute("DROP TABLE " + partition);
+            }
+        }
+        return pending.size() + expired.size();
+    }
+
+    private static LocalDate dayOf(String table, String partition) {
+        String prefix = table + "_p";
+        if (!partition.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(partition.substring(prefix.length()), SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static boolean queryBoolean(Connection connection, String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+}
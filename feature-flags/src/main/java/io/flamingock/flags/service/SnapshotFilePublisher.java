@@ -0,0 +1,70 @@
+package io.flamingock.flags.service;
+
+import io.flamingock.flags.engine.FlagSnapshot;
+import io.flamingock.flags.engine.SnapshotFile;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes every snapshot as a {@link SnapshotFile} at {@code flags.snapshot-file.path}, for
+ * processes on the same host to map. Writes happen on a background thread; if snapshots change
+ * faster than the file is written, only the latest is written.
+ */
+@Service
+public class SnapshotFilePublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotFilePublisher.class);
+
+    private final Path file;
+    private final AtomicReference<FlagSnapshot> pending = new AtomicReference<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("flag-snapshot-file").daemon().factory());
+    private final Timer writeTimer;
+
+    public SnapshotFilePublisher(@Value("${flags.snapshot-file.path:}") String path, MeterRegistry registry) {
+        this.file = path.isBlank() ? null : Path.of(path);
+        this.writeTimer = Timer.builder("flags.snapshot.file.write").register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdownNow();
+    }
+
+    @EventListener
+    public void onSnapshotChanged(FlagSnapshotChanged change) {
+        if (file == null) {
+            return;
+        }
+        if (pending.getAndSet(change.snapshot()) == null) {
+            writer.execute(this::writeLatest);
+        }
+    }
+
+    private void writeLatest() {
+        FlagSnapshot snapshot = pending.getAndSet(null);
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            writeTimer.recordCallable(() -> {
+                SnapshotFile.write(snapshot.definition(), file);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Could not write flag snapshot {} to {}", snapshot.version(), file, e);
+        }
+    }
+}
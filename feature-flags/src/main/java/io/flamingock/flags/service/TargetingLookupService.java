@@ -0,0 +1,53 @@
+package io.flamingock.flags.service;
+
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.CompiledRule;
+import io.flamingock.flags.engine.FlagSnapshot;
+import io.flamingock.flags.repository.RuleLookupRepository;
+import io.flamingock.flags.repository.RuleLookupRepository.RuleRef;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Answers "which flags target this context" from the rule value indexes rather than by evaluating
+ * every flag. Candidates from the database are checked against the compiled rules in the current
+ * snapshot, so a match here is one evaluation would also make.
+ */
+@Service
+public class TargetingLookupService {
+
+    public record TargetingMatch(String flag, boolean flagEnabled, UUID ruleId, String attribute, String operator,
+                                 String value) {
+    }
+
+    private final RuleLookupRepository lookupRepository;
+    private final FlagSnapshotService snapshotService;
+
+    public TargetingLookupService(RuleLookupRepository lookupRepository, FlagSnapshotService snapshotService) {
+        this.lookupRepository = lookupRepository;
+        this.snapshotService = snapshotService;
+    }
+
+    public List<TargetingMatch> matching(Map<String, String> attributes) {
+        if (attributes.isEmpty()) {
+            return List.of();
+        }
+        FlagSnapshot snapshot = snapshotService.current();
+        List<TargetingMatch> matches = new ArrayList<>();
+        for (RuleRef candidate : lookupRepository.findCandidates(attributes)) {
+            CompiledFlag flag = snapshot.get(candidate.flagName());
+            CompiledRule rule = flag != null ? flag.rule(candidate.ruleId()) : null;
+            if (rule != null && rule.matches(attributes)) {
+                matches.add(new TargetingMatch(flag.name(), flag.enabled(), rule.id(), rule.attribute(),
+                        rule.operator().code(), rule.value()));
+            }
+        }
+        matches.sort(Comparator.comparing(TargetingMatch::flag));
+        return matches;
+    }
+}
@@ -0,0 +1,94 @@
+package io.flamingock.flags.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    long now;
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(40, 10, 200, () -> now);
+
+    @BeforeEach
+    void learnNoLoadLatency() {
+        for (int i = 0; i < 30; i++) {
+            window(5, 1);
+        }
+    }
+
+    @Test
+    void admitsUpToTheLimit() {
+        for (int i = 0; i < 40; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(40, limiter.inFlight());
+
+        limiter.release(1_000);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void doesNotGrowWhenCallersUseLittleOfIt() {
+        for (int i = 0; i < 50; i++) {
+            window(12, 1);
+        }
+        assertEquals(40, limiter.limit());
+    }
+
+    @Test
+    void growsWhileSaturatedAndLatencyHolds() {
+        for (int i = 0; i < 50; i++) {
+            window(limiter.limit(), 1);
+        }
+        assertTrue(limiter.limit() > 40, "limit " + limiter.limit());
+    }
+
+    @Test
+    void shrinksWhenCallsSlowDown() {
+        for (int i = 0; i < 20; i++) {
+            window(limiter.limit(), 20);
+        }
+        assertTrue(limiter.limit() < 20, "limit " + limiter.limit());
+    }
+
+    @Test
+    void settlesNearCapacityUnderSustainedOverload() {
+        // Calls take 1ms up to 20 at a time and queue beyond that; callers always want more.
+        for (int i = 0; i < 600; i++) {
+            int admitted = limiter.limit();
+            window(admitted, Math.max(1, admitted / 20.0));
+        }
+        assertTrue(limiter.limit() >= 20 && limiter.limit() <= 60, "limit " + limiter.limit());
+    }
+
+    @Test
+    void neverGoesBelowTheMinimum() {
+        int lowest = Integer.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            window(limiter.limit(), 1_000);
+            lowest = Math.min(lowest, limiter.limit());
+        }
+        assertEquals(10, lowest);
+    }
+
+    /**
+     * Starts {@code concurrency} calls, lets a window pass and completes them, each having taken
+     * {@code millis}.
+     */
+    private void window(int concurrency, double millis) {
+        int admitted = 0;
+        while (admitted < concurrency && limiter.tryAcquire()) {
+            admitted++;
+        }
+        now += TimeUnit.MILLISECONDS.toNanos(101);
+        for (int i = 0; i < admitted; i++) {
+            limiter.release((long) (millis * 1_000_000));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.flamingock.flags.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Routing decisions against mocked pools; the lag query itself needs a real standby, see the
+ * {@code read-replica} compose profile.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    DataSource primary = mock(DataSource.class);
+    DataSource replica = mock(DataSource.class);
+    Connection primaryConnection = mock(Connection.class);
+    Connection replicaConnection = mock(Connection.class);
+    ResultSet lag = mock(ResultSet.class);
+    ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replica, Duration.ofMillis(500));
+
+    @BeforeEach
+    void connect() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        Statement statement = mock(Statement.class);
+        when(replicaConnection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(ReplicaRoutingDataSource.LAG)).thenReturn(lag);
+    }
+
+    @AfterEach
+    void endTransaction() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        routing.close();
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplicaOnceItIsCaughtUp() throws SQLException {
+        readOnly();
+        assertSame(primaryConnection, routing.getConnection());
+
+        replicaLag(120);
+        assertTrue(routing.replicaUsable());
+        assertSame(replicaConnection, routing.getConnection());
+        assertEquals(1, routing.replicaConnections());
+    }
+
+    @Test
+    void writesAndReadsOutsideATransactionUseThePrimary() throws SQLException {
+        replicaLag(0);
+        assertSame(primaryConnection, routing.getConnection());
+    }
+
+    @Test
+    void aLaggingReplicaIsSkippedUntilItCatchesUp() throws SQLException {
+        readOnly();
+        replicaLag(900);
+        assertFalse(routing.replicaUsable());
+        assertSame(primaryConnection, routing.getConnection());
+
+        replicaLag(10);
+        assertSame(replicaConnection, routing.getConnection());
+    }
+
+    @Test
+    void aReplicaThatHasReplayedNothingIsSkipped() throws SQLException {
+        when(lag.next()).thenReturn(true);
+        when(lag.wasNull()).thenReturn(true);
+        routing.checkReplica();
+        assertFalse(routing.replicaUsable());
+        assertTrue(Double.isNaN(routing.lagMillis()));
+    }
+
+    @Test
+    void aReplicaRefusingConnectionsFallsBackToThePrimary() throws SQLException {
+        readOnly();
+        replicaLag(0);
+        when(replica.getConnection()).thenThrow(new SQLTransientConnectionException("pool exhausted"));
+
+        assertSame(primaryConnection, routing.getConnection());
+        assertEquals(1, routing.fallbacks());
+        assertFalse(routing.replicaUsable());
+
+        routing.checkReplica();
+        assertFalse(routing.replicaUsable());
+    }
+
+    private void readOnly() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    }
+
+    private void replicaLag(double millis) throws SQLException {
+        when(lag.next()).thenReturn(true);
+        when(lag.getDouble(1)).thenReturn(millis);
+        when(lag.wasNull()).thenReturn(false);
+        routing.checkReplica();
+    }
+}
@@ -0,0 +1,181 @@
+package io.flamingock.flags.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.EvalResult;
+import io.flamingock.flags.engine.SegmentDefinition;
+import io.flamingock.flags.engine.conformance.ConformanceSuite;
+import io.flamingock.flags.repository.FlagDefinitionRepository;
+import io.flamingock.flags.repository.FlagPrerequisiteRepository;
+import io.flamingock.flags.repository.FlagRepository;
+import io.flamingock.flags.repository.FlagUpdateRepository;
+import io.flamingock.flags.repository.SegmentRepository;
+import io.flamingock.flags.repository.TargetingRuleRepository;
+import io.flamingock.flags.service.BatchEvaluationService;
+import io.flamingock.flags.service.EvaluationService;
+import io.flamingock.flags.service.ExposureRecorder;
+import io.flamingock.flags.service.FlagEventBroadcaster;
+import io.flamingock.flags.service.FlagImportService;
+import io.flamingock.flags.service.FlagSnapshotService;
+import io.flamingock.flags.service.FlagStreamService;
+import io.flamingock.flags.service.TargetingLookupService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * {@code POST /flags/evaluate} against {@code GET /flags/evaluate/{name}} over the conformance
+ * flags, through the controller. The two paths part below it: the batch shares one prerequisite
+ * memo across the request, and each reads the shed attribute and records exposures on its own. For
+ * every context in the cases, the batch answer for each flag must be the single-flag answer, with
+ * the same exposure recorded.
+ */
+class FlagControllerEvaluateTest {
+
+    record Exposure(String flagName, String userId, EvalResult result) {
+    }
+
+    final ObjectMapper objectMapper = new ObjectMapper();
+    final List<Exposure> exposures = new ArrayList<>();
+    FlagSnapshotService snapshotService;
+    MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        FlagDefinitionRepository definitionRepository = mock(FlagDefinitionRepository.class);
+        when(definitionRepository.findAll()).thenReturn(ConformanceSuite.flags());
+        SegmentRepository segmentRepository = mock(SegmentRepository.class);
+        Map<String, long[]> segments = new HashMap<>();
+        for (SegmentDefinition segment : ConformanceSuite.segments()) {
+            segments.put(segment.name(), segment.members());
+        }
+        when(segmentRepository.loadAll()).thenReturn(segments);
+        snapshotService = new FlagSnapshotService(definitionRepository, segmentRepository, event -> {
+        }, new SimpleMeterRegistry());
+        snapshotService.rebuild();
+
+        ExposureRecorder exposureRecorder = mock(ExposureRecorder.class);
+        doAnswer(invocation -> exposures.add(new Exposure(invocation.getArgument(0), invocation.getArgument(1),
+                invocation.getArgument(2)))).when(exposureRecorder).record(any(), any(), any());
+
+        FlagController controller = new FlagController(mock(FlagRepository.class), mock(TargetingRuleRepository.class),
+                new EvaluationService(snapshotService, exposureRecorder), snapshotService,
+                mock(BatchEvaluationService.class), mock(FlagEventBroadcaster.class), mock(FlagStreamService.class),
+                segmentRepository, mock(FlagImportService.class), mock(FlagUpdateRepository.class),
+                mock(TargetingLookupService.class), mock(FlagPrerequisiteRepository.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    /**
+     * Every distinct user and attributes in the cases. {@code POST} requires a user id, so the
+     * case with an empty one is left out.
+     */
+    static Stream<Arguments> contexts() {
+        Set<List<Object>> contexts = new LinkedHashSet<>();
+        ConformanceSuite.cases()
+                .map(arguments -> (ConformanceSuite.Case) arguments.get()[0])
+                .filter(testCase -> !testCase.userId().isEmpty())
+                .forEach(testCase -> contexts.add(List.of(testCase.userId(), testCase.attributes())));
+        return contexts.stream().map(context -> Arguments.of(context.get(0), context.get(1)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("contexts")
+    void batchMatchesSingleFlagEvaluation(String userId, Map<String, String> attributes) throws Exception {
+        for (boolean explain : new boolean[]{false, true}) {
+            exposures.clear();
+            JsonNode batch = evaluateAll(userId, attributes, explain, false);
+            List<Exposure> batchExposures = List.copyOf(exposures);
+
+            exposures.clear();
+            List<String> flagNames = new ArrayList<>();
+            batch.fieldNames().forEachRemaining(flagNames::add);
+            for (String flagName : flagNames) {
+                assertEquals(evaluate(flagName, userId, attributes, explain, false), batch.get(flagName),
+                        flagName + " / " + userId + " " + attributes + " explain=" + explain);
+            }
+
+            assertEquals(snapshotNames(), flagNames);
+            assertEquals(batchExposures, exposures);
+        }
+    }
+
+    @Test
+    void shedRequestsMatchWithoutExplanationOrExposures() throws Exception {
+        Map<String, String> attributes = Map.of("plan", "pro", "country", "DE");
+        JsonNode unshed = evaluateAll("user-1", attributes, false, false);
+        exposures.clear();
+
+        JsonNode batch = evaluateAll("user-1", attributes, true, true);
+        Map<String, JsonNode> single = new LinkedHashMap<>();
+        for (String flagName : snapshotNames()) {
+            single.put(flagName, evaluate(flagName, "user-1", attributes, true, true));
+        }
+
+        assertEquals(unshed, batch);
+        assertEquals(unshed, objectMapper.valueToTree(single));
+        assertEquals(List.of(), exposures);
+        // Flags with prerequisites are among those compared.
+        assertFalse(snapshotService.current().get("checkout-bundle").prerequisites().isEmpty());
+    }
+
+    private JsonNode evaluateAll(String userId, Map<String, String> attributes, boolean explain, boolean shed)
+            throws Exception {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("userId", userId);
+        body.put("attributes", attributes);
+        body.put("explain", explain);
+        MockHttpServletRequestBuilder request = post("/flags/evaluate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(body));
+        return send(shed ? request.requestAttr(EvaluationAdmissionFilter.SHED, true) : request);
+    }
+
+    private JsonNode evaluate(String flagName, String userId, Map<String, String> attributes, boolean explain,
+                              boolean shed) throws Exception {
+        MockHttpServletRequestBuilder request = get("/flags/evaluate/{name}", flagName)
+                .param("userId", userId)
+                .param("explain", String.valueOf(explain));
+        attributes.forEach(request::param);
+        return send(shed ? request.requestAttr(EvaluationAdmissionFilter.SHED, true) : request);
+    }
+
+    private JsonNode send(MockHttpServletRequestBuilder request) throws Exception {
+        String body = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        return objectMapper.readTree(body);
+    }
+
+    private List<String> snapshotNames() {
+        return snapshotService.current().flags().stream().map(CompiledFlag::name).toList();
+    }
+}
@@ -0,0 +1,154 @@
+package io.flamingock.flags.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link JdbcTemplate} without a database. Row-callback queries are answered with canned rows,
+ * one map per row keyed by column label, handed over one at a time the way a cursor would.
+ * Prepared-statement queries each take the next answer queued with {@link #thenAnswer}, or no rows.
+ * Every statement is recorded, with the arguments bound to it.
+ */
+public class CannedJdbcTemplate extends JdbcTemplate {
+
+    private final List<Map<String, Object>> rows;
+    private final Deque<List<Map<String, Object>>> answers = new ArrayDeque<>();
+    private final List<String> statements = new ArrayList<>();
+    private final List<Object[]> arguments = new ArrayList<>();
+    private int rowsRead;
+
+    public CannedJdbcTemplate(List<Map<String, Object>> rows) {
+        this.rows = rows;
+    }
+
+    public CannedJdbcTemplate thenAnswer(List<Map<String, Object>> answer) {
+        answers.add(answer);
+        return this;
+    }
+
+    public List<String> statements() {
+        return statements;
+    }
+
+    public List<Object[]> arguments() {
+        return arguments;
+    }
+
+    /**
+     * Rows handed to the callback so far, including the one being processed.
+     */
+    public int rowsRead() {
+        return rowsRead;
+    }
+
+    @Override
+    public void query(String sql, RowCallbackHandler handler) {
+        query(sql, handler, new Object[0]);
+    }
+
+    @Override
+    public void query(String sql, RowCallbackHandler handler, Object... args) {
+        statements.add(sql);
+        arguments.add(args);
+        for (Map<String, Object> row : rows) {
+            rowsRead++;
+            try {
+                handler.processRow(resultSet(row));
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Override
+    public <T> List<T> query(PreparedStatementCreator creator, RowMapper<T> mapper) {
+        List<Object> bound = new ArrayList<>();
+        try {
+            creator.createPreparedStatement(connection(bound));
+            arguments.add(bound.toArray());
+            List<T> results = new ArrayList<>();
+            List<Map<String, Object>> answer = answers.isEmpty() ? List.of() : answers.remove();
+            for (Map<String, Object> row : answer) {
+                results.add(mapper.mapRow(resultSet(row), results.size()));
+            }
+            return results;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+        statements.add(sql);
+        arguments.add(args);
+        return null;
+    }
+
+    private static ResultSet resultSet(Map<String, Object> row) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    // By position only for rows whose map keeps the column order, such as single columns.
+                    Object value = args[0] instanceof Integer index
+                            ? new ArrayList<>(row.values()).get(index - 1) : row.get((String) args[0]);
+                    return switch (method.getName()) {
+                        case "getBoolean" -> value != null && (Boolean) value;
+                        case "getInt" -> value != null ? ((Number) value).intValue() : 0;
+                        case "getLong" -> value != null ? ((Number) value).longValue() : 0L;
+                        case "getArray" -> array((String[]) value);
+                        case "getString", "getObject" -> value;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+
+    /**
+     * Prepares statements that record their SQL and the values bound to them; arrays are bound as
+     * their elements.
+     */
+    private Connection connection(List<Object> bound) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "prepareStatement" -> {
+                        statements.add((String) args[0]);
+                        yield preparedStatement(bound);
+                    }
+                    case "createArrayOf" -> array((Object[]) args[1]);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static PreparedStatement preparedStatement(List<Object> bound) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().startsWith("set")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    bound.add(args[1] instanceof Array array ? array.getArray() : args[1]);
+                    return null;
+                });
+    }
+
+    private static Array array(Object[] values) {
+        return (Array) Proxy.newProxyInstance(Array.class.getClassLoader(), new Class<?>[]{Array.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getArray" -> values;
+                    case "free" -> null;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
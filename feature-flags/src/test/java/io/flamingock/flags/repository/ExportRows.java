@@ -0,0 +1,63 @@
+package io.flamingock.flags.repository;
+
+import io.flamingock.flags.repository.FlagImportRepository.ImportedFlag;
+import io.flamingock.flags.repository.FlagImportRepository.ImportedRule;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The export of three flags: {@code checkout} with two rules, {@code dark-mode} with none and
+ * {@code search} with one rule and a prerequisite.
+ */
+public final class ExportRows {
+
+    private static final UUID RULE_1 = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID RULE_2 = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID RULE_3 = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+    /**
+     * The rows of the export join, in its order.
+     */
+    public static List<Map<String, Object>> rows() {
+        return List.of(
+                row("checkout", true, 5_000, new String[0], RULE_1, "country", "in", "ES,PT"),
+                row("checkout", true, 5_000, new String[0], RULE_2, "plan", "equals", "pro"),
+                row("dark-mode", false, 10_000, new String[0], null, null, null, null),
+                row("search", true, 2_500, new String[]{"checkout"}, RULE_3, "beta", "equals", "true"));
+    }
+
+    /**
+     * The flags those rows describe.
+     */
+    public static List<ImportedFlag> flags() {
+        return List.of(
+                new ImportedFlag("checkout", "checkout desc", true, 5_000, 2, List.of(
+                        new ImportedRule(RULE_1, "country", "in", "ES,PT"),
+                        new ImportedRule(RULE_2, "plan", "equals", "pro")), List.of()),
+                new ImportedFlag("dark-mode", "dark-mode desc", false, 10_000, 2, List.of(), List.of()),
+                new ImportedFlag("search", "search desc", true, 2_500, 2, List.of(
+                        new ImportedRule(RULE_3, "beta", "equals", "true")), List.of("checkout")));
+    }
+
+    private static Map<String, Object> row(String name, boolean enabled, int basisPoints, String[] prerequisites,
+                                           UUID ruleId, String attribute, String operator, String value) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("name", name);
+        row.put("description", name + " desc");
+        row.put("enabled", enabled);
+        row.put("rollout_basis_points", basisPoints);
+        row.put("bucketing_version", 2);
+        row.put("prerequisites", prerequisites);
+        row.put("id", ruleId);
+        row.put("attribute", attribute);
+        row.put("operator", operator);
+        row.put("value", value);
+        return row;
+    }
+
+    private ExportRows() {
+    }
+}
@@ -0,0 +1,89 @@
+package io.flamingock.flags.repository;
+
+import io.flamingock.flags.repository.ExposureRepository.Exposure;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Batches against an in-memory {@code flag_exposures} that only takes rows for days it has a
+ * partition for, like Postgres without a default partition.
+ */
+class ExposureRepositoryTest {
+
+    static final LocalDate DAY = LocalDate.of(2026, 3, 1);
+
+    Set<LocalDate> partitions = new TreeSet<>(Set.of(DAY));
+    List<Exposure> written = new ArrayList<>();
+    List<LocalDate> ensured = new ArrayList<>();
+    int batches;
+    boolean rejectEverything;
+
+    JdbcTemplate jdbcTemplate = new JdbcTemplate() {
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batch, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> setter) {
+            batches++;
+            for (T row : batch) {
+                if (rejectEverything || !partitions.contains(day((Exposure) row))) {
+                    throw new DataIntegrityViolationException("no partition of relation \"flag_exposures\" found for row");
+                }
+            }
+            batch.forEach(row -> written.add((Exposure) row));
+            return new int[][]{};
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            LocalDate day = ((Date) args[0]).toLocalDate();
+            ensured.add(day);
+            return requiredType.cast(partitions.add(day));
+        }
+    };
+
+    ExposureRepository repository = new ExposureRepository(jdbcTemplate);
+
+    @Test
+    void createsTheMissingDaysAndRetriesTheBatchOnce() {
+        List<Exposure> batch = List.of(exposure(DAY.plusDays(1)), exposure(DAY), exposure(DAY.plusDays(1)));
+
+        repository.insertAll(batch);
+
+        assertEquals(batch, written);
+        assertEquals(List.of(DAY, DAY.plusDays(1)), ensured);
+        assertEquals(2, batches);
+    }
+
+    @Test
+    void rethrowsWhenNoPartitionWasMissing() {
+        rejectEverything = true;
+
+        assertThrows(DataIntegrityViolationException.class, () -> repository.insertAll(List.of(exposure(DAY))));
+
+        assertEquals(List.of(), written);
+        assertEquals(1, batches);
+    }
+
+    private static Exposure exposure(LocalDate day) {
+        return new Exposure("checkout", "user-1", true, "FULL_ROLLOUT", null,
+                day.atTime(12, 0).toInstant(ZoneOffset.UTC).toEpochMilli());
+    }
+
+    private static LocalDate day(Exposure exposure) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(exposure.exposedAtMillis()), ZoneOffset.UTC);
+    }
+}
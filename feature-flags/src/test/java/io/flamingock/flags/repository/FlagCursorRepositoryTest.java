@@ -0,0 +1,55 @@
+package io.flamingock.flags.repository;
+
+import io.flamingock.flags.repository.FlagImportRepository.ImportedFlag;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlagCursorRepositoryTest {
+
+    @Test
+    void handsOverEachFlagOnceItsLastRowHasBeenRead() {
+        CannedJdbcTemplate jdbcTemplate = new CannedJdbcTemplate(ExportRows.rows());
+        FlagCursorRepository repository = new FlagCursorRepository(jdbcTemplate, 30_000, 300_000);
+        List<ImportedFlag> flags = new ArrayList<>();
+        List<Integer> rowsReadAtDelivery = new ArrayList<>();
+
+        repository.forEachFlagWithRules(flag -> {
+            // Only valid during the call, so keep a copy.
+            flags.add(new ImportedFlag(flag.name(), flag.description(), flag.enabled(), flag.rolloutBasisPoints(),
+                    flag.bucketingVersion(), List.copyOf(flag.rules()), flag.prerequisites()));
+            rowsReadAtDelivery.add(jdbcTemplate.rowsRead());
+        });
+
+        assertEquals(ExportRows.flags(), flags);
+        // checkout goes out while the cursor is on dark-mode's row, not after the whole result.
+        assertEquals(List.of(3, 4, 4), rowsReadAtDelivery);
+    }
+
+    @Test
+    void limitsHowLongTheTransactionWaitsForTheClient() {
+        CannedJdbcTemplate jdbcTemplate = new CannedJdbcTemplate(ExportRows.rows());
+        FlagCursorRepository repository = new FlagCursorRepository(jdbcTemplate, 15_000, 300_000);
+
+        repository.forEachFlagWithRules(flag -> {
+        });
+
+        assertTrue(jdbcTemplate.statements().get(0).contains("idle_in_transaction_session_timeout"));
+        assertEquals("15000ms", jdbcTemplate.arguments().get(0)[0]);
+    }
+
+    @Test
+    void failsAStreamThatRunsPastItsMaximumDuration() {
+        CannedJdbcTemplate jdbcTemplate = new CannedJdbcTemplate(ExportRows.rows());
+        FlagCursorRepository repository = new FlagCursorRepository(jdbcTemplate, 30_000, 0);
+
+        assertThrows(QueryTimeoutException.class, () -> repository.forEachFlagWithRules(flag -> {
+        }));
+    }
+}
@@ -0,0 +1,75 @@
+package io.flamingock.flags.repository;
+
+import io.flamingock.flags.repository.FlagCursorRepository.FlagRow;
+import io.flamingock.flags.repository.FlagUpdateRepository.FlagUpdate;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The {@code UPDATE ... RETURNING} is answered with the rows Postgres would return: only those of
+ * flags that exist and are still at their expected version.
+ */
+class FlagUpdateRepositoryTest {
+
+    static final OffsetDateTime CREATED = OffsetDateTime.parse("2026-01-05T10:00:00Z");
+
+    CannedJdbcTemplate jdbcTemplate = new CannedJdbcTemplate(List.of());
+    FlagUpdateRepository repository = new FlagUpdateRepository(jdbcTemplate);
+
+    @Test
+    void returnsTheNewRowsInTheOrderOfTheUpdates() {
+        jdbcTemplate.thenAnswer(List.of(row("dark-mode", false, 4), row("checkout", true, 8)));
+
+        List<FlagRow> rows = repository.updateAll(List.of(
+                new FlagUpdate("checkout", true, null, 7L),
+                new FlagUpdate("dark-mode", false, null, null)));
+
+        assertEquals(List.of("checkout", "dark-mode"), rows.stream().map(FlagRow::name).toList());
+        assertEquals(8, rows.get(0).version());
+        assertEquals(1, jdbcTemplate.statements().size());
+        assertArrayEquals(new Object[]{7L, null}, (Object[]) jdbcTemplate.arguments().get(0)[3]);
+    }
+
+    @Test
+    void reportsAConflictWhenAFlagIsNoLongerAtItsExpectedVersion() {
+        jdbcTemplate.thenAnswer(List.of(row("dark-mode", true, 4)))
+                .thenAnswer(List.of(Map.of("name", "checkout")));
+
+        OptimisticLockingFailureException e = assertThrows(OptimisticLockingFailureException.class,
+                () -> repository.updateAll(List.of(
+                        new FlagUpdate("checkout", false, null, 7L),
+                        new FlagUpdate("dark-mode", true, null, 3L))));
+
+        assertEquals("flags changed since the expected version: [checkout]", e.getMessage());
+        // Only the flag that was not updated is looked up.
+        assertArrayEquals(new Object[]{"checkout"}, (Object[]) jdbcTemplate.arguments().get(1)[0]);
+    }
+
+    @Test
+    void reportsAMissingFlagRatherThanAConflict() {
+        jdbcTemplate.thenAnswer(List.of())
+                .thenAnswer(List.of(Map.of("name", "checkout")));
+
+        NoSuchElementException e = assertThrows(NoSuchElementException.class,
+                () -> repository.updateAll(List.of(
+                        new FlagUpdate("checkout", false, null, 7L),
+                        new FlagUpdate("retired", true, null, null))));
+
+        assertEquals("flag not found: retired", e.getMessage());
+    }
+
+    private static Map<String, Object> row(String name, boolean enabled, long version) {
+        return Map.of("name", name, "description", name + " desc", "enabled", enabled,
+                "rollout_percentage", 100, "rollout_basis_points", 10_000, "bucketing_version", 2,
+                "created_at", CREATED, "updated_at", CREATED.plusDays(version), "version", version);
+    }
+}
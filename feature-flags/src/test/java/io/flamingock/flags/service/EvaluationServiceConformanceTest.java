@@ -0,0 +1,51 @@
+package io.flamingock.flags.service;
+
+import io.flamingock.flags.engine.SegmentDefinition;
+import io.flamingock.flags.engine.conformance.ConformanceSuite;
+import io.flamingock.flags.repository.FlagDefinitionRepository;
+import io.flamingock.flags.repository.SegmentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Loads the conformance flags through the same definition-to-snapshot path the server uses at startup
+ * and checks every case against {@link EvaluationService}.
+ */
+class EvaluationServiceConformanceTest {
+
+    static EvaluationService evaluationService;
+
+    @BeforeAll
+    static void loadSnapshot() {
+        FlagDefinitionRepository definitionRepository = mock(FlagDefinitionRepository.class);
+        when(definitionRepository.findAll()).thenReturn(ConformanceSuite.flags());
+        SegmentRepository segmentRepository = mock(SegmentRepository.class);
+        Map<String, long[]> segments = new HashMap<>();
+        for (SegmentDefinition segment : ConformanceSuite.segments()) {
+            segments.put(segment.name(), segment.members());
+        }
+        when(segmentRepository.loadAll()).thenReturn(segments);
+
+        FlagSnapshotService snapshotService = new FlagSnapshotService(definitionRepository, segmentRepository,
+                event -> {
+                }, new SimpleMeterRegistry());
+        snapshotService.rebuild();
+        evaluationService = new EvaluationService(snapshotService, mock(ExposureRecorder.class));
+    }
+
+    @ParameterizedTest
+    @MethodSource("io.flamingock.flags.engine.conformance.ConformanceSuite#cases")
+    void matchesClient(ConformanceSuite.Case testCase) {
+        assertEquals(testCase.expected(), evaluationService.evaluate(testCase.flag(), testCase.userId(), testCase.attributes(), false));
+        assertEquals(testCase.explained(), evaluationService.evaluate(testCase.flag(), testCase.userId(), testCase.attributes(), true));
+    }
+}
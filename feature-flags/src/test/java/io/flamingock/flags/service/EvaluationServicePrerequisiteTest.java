@@ -0,0 +1,90 @@
+package io.flamingock.flags.service;
+
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.CompiledRule;
+import io.flamingock.flags.engine.EvalResult;
+import io.flamingock.flags.engine.FlagSnapshot;
+import io.flamingock.flags.engine.RuleOperator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A diamond: {@code bundle} requires {@code checkout} and {@code upsell}, which both require
+ * {@code payments}, whose only rule counts how often it is tested.
+ */
+class EvaluationServicePrerequisiteTest {
+
+    static final Map<String, String> PRO = Map.of("plan", "pro");
+
+    AtomicInteger paymentsRuleTests = new AtomicInteger();
+    FlagSnapshotService snapshotService = mock(FlagSnapshotService.class);
+    EvaluationService evaluationService = new EvaluationService(snapshotService, mock(ExposureRecorder.class));
+
+    @BeforeEach
+    void snapshot() {
+        CompiledRule counted = CompiledRule.compile(new UUID(0, 1), "plan", "matches", "pro");
+        CompiledRule payments = new CompiledRule(counted.id(), counted.attribute(), RuleOperator.MATCHES, counted.value(),
+                value -> {
+                    paymentsRuleTests.incrementAndGet();
+                    return counted.predicate().test(value);
+                }, counted.matchResult());
+        FlagSnapshot snapshot = FlagSnapshot.of(1, List.of(
+                CompiledFlag.of("payments", true, 0, 2, List.of(payments)),
+                requiring("checkout", "payments"),
+                requiring("upsell", "payments"),
+                requiring("bundle", "checkout", "upsell"),
+                requiring("cycle-a", "cycle-b"),
+                requiring("cycle-b", "cycle-a")));
+        when(snapshotService.current()).thenReturn(snapshot);
+        when(snapshotService.lookup("bundle")).thenReturn(snapshot.get("bundle"));
+    }
+
+    @Test
+    void sharedPrerequisitesAreComputedOncePerRequest() {
+        Map<String, EvalResult> results = evaluationService.evaluateAll("user-1", PRO, false);
+
+        assertEquals(1, paymentsRuleTests.get());
+        assertTrue(results.get("bundle").enabled());
+        assertEquals(EvalResult.Reason.FULL_ROLLOUT, results.get("bundle").reason());
+    }
+
+    @Test
+    void aSingleEvaluationAlsoComputesEachPrerequisiteOnce() {
+        assertTrue(evaluationService.evaluate("bundle", "user-1", PRO, false).enabled());
+        assertEquals(1, paymentsRuleTests.get());
+    }
+
+    @Test
+    void theFirstPrerequisiteThatIsOffIsNamed() {
+        EvalResult result = evaluationService.evaluate("bundle", "user-1", Map.of("plan", "free"), true);
+
+        assertFalse(result.enabled());
+        assertEquals(EvalResult.Reason.PREREQUISITE_FAILED, result.reason());
+        assertEquals("checkout", result.prerequisite());
+        assertEquals("prerequisite checkout is off", result.explanation());
+    }
+
+    @Test
+    void flagsOnACycleAreOff() {
+        Map<String, EvalResult> results = evaluationService.evaluateAll("user-1", PRO, false);
+
+        assertFalse(results.get("cycle-a").enabled());
+        assertFalse(results.get("cycle-b").enabled());
+    }
+
+    private static CompiledFlag requiring(String name, String... prerequisites) {
+        return CompiledFlag.of(name, true, 10_000, 2, List.of(),
+                List.of(prerequisites).stream().map(CompiledFlag::unresolved).toList());
+    }
+}
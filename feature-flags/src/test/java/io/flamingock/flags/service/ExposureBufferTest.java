@@ -0,0 +1,117 @@
+package io.flamingock.flags.service;
+
+import io.flamingock.flags.repository.ExposureRepository.Exposure;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExposureBufferTest {
+
+    @Test
+    void roundsCapacityUpToAPowerOfTwo() {
+        assertEquals(4, new ExposureBuffer(1).capacity());
+        assertEquals(8, new ExposureBuffer(8).capacity());
+        assertEquals(16, new ExposureBuffer(9).capacity());
+    }
+
+    @Test
+    void keepsOrderAcrossManyWrapArounds() {
+        ExposureBuffer buffer = new ExposureBuffer(4);
+        List<Exposure> batch = new ArrayList<>();
+        int next = 0;
+        for (int round = 0; round < 100; round++) {
+            int first = next;
+            for (int i = 0; i < 3; i++) {
+                assertTrue(buffer.offer(exposure(0, next++)));
+            }
+            batch.clear();
+            assertEquals(3, buffer.drainTo(batch, 10));
+            for (int i = 0; i < 3; i++) {
+                assertEquals(first + i, batch.get(i).exposedAtMillis());
+            }
+            assertEquals(0, buffer.size());
+        }
+    }
+
+    @Test
+    void refusesOffersWhileFullAndAcceptsThemOnceDrained() {
+        ExposureBuffer buffer = new ExposureBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(exposure(0, i)));
+        }
+        assertFalse(buffer.offer(exposure(0, 4)));
+        assertEquals(4, buffer.size());
+
+        List<Exposure> batch = new ArrayList<>();
+        assertEquals(1, buffer.drainTo(batch, 1));
+        assertTrue(buffer.offer(exposure(0, 4)));
+        assertFalse(buffer.offer(exposure(0, 5)));
+
+        batch.clear();
+        assertEquals(4, buffer.drainTo(batch, 10));
+        assertEquals(1, batch.get(0).exposedAtMillis());
+        assertEquals(4, batch.get(3).exposedAtMillis());
+    }
+
+    @Test
+    void concurrentProducersLoseNothingButWhatWasRefused() throws Exception {
+        int producers = 4;
+        int perProducer = 100_000;
+        ExposureBuffer buffer = new ExposureBuffer(256);
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> refused = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            refused.add(pool.submit(() -> {
+                start.await();
+                int count = 0;
+                for (int i = 0; i < perProducer; i++) {
+                    if (!buffer.offer(exposure(producer, i))) {
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+        pool.shutdown();
+
+        long[] lastSeen = new long[producers];
+        Arrays.fill(lastSeen, -1);
+        int drained = 0;
+        List<Exposure> batch = new ArrayList<>();
+        start.countDown();
+        while (!pool.isTerminated() || buffer.size() > 0) {
+            batch.clear();
+            drained += buffer.drainTo(batch, 64);
+            for (Exposure exposure : batch) {
+                int producer = Integer.parseInt(exposure.userId());
+                // Each producer's exposures come out in the order it offered them, with no repeats.
+                assertTrue(exposure.exposedAtMillis() > lastSeen[producer]);
+                lastSeen[producer] = exposure.exposedAtMillis();
+            }
+        }
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        int totalRefused = 0;
+        for (Future<Integer> future : refused) {
+            totalRefused += future.get();
+        }
+        assertEquals(producers * perProducer, drained + totalRefused);
+    }
+
+    private static Exposure exposure(int producer, long sequence) {
+        return new Exposure("flag", Integer.toString(producer), true, "FULL_ROLLOUT", null, sequence);
+    }
+}
@@ -0,0 +1,113 @@
+package io.flamingock.flags.service;
+
+import io.flamingock.flags.engine.EvalResult;
+import io.flamingock.flags.repository.ExposureRepository;
+import io.flamingock.flags.repository.ExposureRepository.Exposure;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The flush thread is given an interval longer than any test, so each test drives {@code flush()}
+ * itself.
+ */
+class ExposureRecorderTest {
+
+    static final EvalResult ON = new EvalResult(true, EvalResult.Reason.FULL_ROLLOUT, null, EvalResult.NO_BUCKET, null, null);
+    static final EvalResult OFF = new EvalResult(false, EvalResult.Reason.FLAG_DISABLED, null, EvalResult.NO_BUCKET, null, null);
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    List<Exposure> written = new ArrayList<>();
+    boolean failWrites;
+    ExposureRecorder recorder;
+
+    ExposureRepository repository = new ExposureRepository(new JdbcTemplate()) {
+        @Override
+        public void insertAll(List<Exposure> exposures) {
+            if (failWrites) {
+                throw new IllegalStateException("database down");
+            }
+            written.addAll(exposures);
+        }
+    };
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        recorder.shutdown();
+    }
+
+    @Test
+    void dropsAndCountsExposuresWhenTheBufferIsFull() {
+        recorder = recorder(4, 60_000);
+        for (int i = 0; i < 6; i++) {
+            recorder.record("dark-mode", "user-" + i, ON);
+        }
+        assertEquals(4.0, count("recorded"));
+        assertEquals(2.0, count("dropped"));
+
+        recorder.flush();
+        assertEquals(4, written.size());
+        assertEquals("user-0", written.get(0).userId());
+
+        recorder.record("dark-mode", "user-6", ON);
+        assertEquals(5.0, count("recorded"));
+    }
+
+    @Test
+    void skipsRepeatsWithinTheWindow() {
+        recorder = recorder(64, 60_000);
+        recorder.record("dark-mode", "user-1", ON);
+        recorder.record("dark-mode", "user-1", ON);
+        recorder.record("dark-mode", "user-1", OFF);
+        recorder.record("new-checkout", "user-1", ON);
+        recorder.flush();
+        recorder.record("dark-mode", "user-1", ON);
+
+        assertEquals(3.0, count("recorded"));
+        assertEquals(2.0, count("deduplicated"));
+    }
+
+    @Test
+    void recordsRepeatsAgainOnceTheWindowHasPassed() {
+        recorder = recorder(64, 0);
+        recorder.record("dark-mode", "user-1", ON);
+        recorder.record("dark-mode", "user-1", ON);
+        recorder.flush();
+        recorder.record("dark-mode", "user-1", ON);
+        recorder.flush();
+
+        assertEquals(2, written.size());
+        assertEquals(1.0, count("deduplicated"));
+    }
+
+    @Test
+    void countsBatchesThatCouldNotBeWritten() {
+        recorder = recorder(64, 60_000);
+        failWrites = true;
+        recorder.record("dark-mode", "user-1", ON);
+        recorder.record("dark-mode", "user-2", ON);
+        recorder.flush();
+
+        assertEquals(2.0, count("failed"));
+        assertEquals(0.0, count("written"));
+
+        failWrites = false;
+        recorder.record("dark-mode", "user-3", ON);
+        recorder.flush();
+        assertEquals(1.0, count("written"));
+    }
+
+    private ExposureRecorder recorder(int capacity, long dedupWindowMillis) {
+        return new ExposureRecorder(repository, registry, true, capacity, 100, 3_600_000, dedupWindowMillis, 1024);
+    }
+
+    private double count(String outcome) {
+        return registry.get("flags.exposures").tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,175 @@
+package io.flamingock.flags.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The feed against in-memory {@code flag_changes} and {@code segment_changes} tables, each row
+ * tagged with the transaction that wrote it, and a queue of transaction id horizons.
+ */
+class FlagChangeFeedTest {
+
+    static final OffsetDateTime CHANGED = OffsetDateTime.parse("2026-03-01T12:00:00Z");
+
+    record FlagChange(long txid, String flagName) {
+    }
+
+    record SegmentChange(long txid, String segmentName, long memberHash) {
+    }
+
+    List<FlagChange> flagChanges = new ArrayList<>();
+    List<SegmentChange> segmentChanges = new ArrayList<>();
+    Deque<Long> horizons = new ArrayDeque<>();
+    List<String> statements = new ArrayList<>();
+
+    List<String> calls = new ArrayList<>();
+    List<Collection<String>> refreshed = new ArrayList<>();
+    List<Map<String, long[]>> refreshedSegments = new ArrayList<>();
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    JdbcTemplate jdbcTemplate = new JdbcTemplate() {
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            statements.add(sql);
+            return requiredType.cast(horizons.remove());
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> mapper, Object... args) {
+            statements.add(sql);
+            List<T> rows = new ArrayList<>();
+            for (FlagChange change : flagChanges) {
+                if (inRange(change.txid(), args)) {
+                    try {
+                        rows.add(mapper.mapRow(resultSet(Map.of("flag_name", change.flagName(),
+                                "changed_at", CHANGED, "polled_at", CHANGED.plusSeconds(1))), rows.size()));
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+            return rows;
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler handler, Object... args) {
+            statements.add(sql);
+            for (SegmentChange change : segmentChanges) {
+                if (inRange(change.txid(), args)) {
+                    try {
+                        handler.processRow(resultSet(Map.of(1, change.segmentName(), 2, change.memberHash())));
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }
+    };
+
+    FlagSnapshotService snapshotService = new FlagSnapshotService(null, null, event -> {
+    }, registry) {
+        @Override
+        public void rebuild() {
+            calls.add("rebuild");
+        }
+
+        @Override
+        public void refresh(Collection<String> flagNames) {
+            refreshed.add(List.copyOf(flagNames));
+        }
+
+        @Override
+        public void refreshSegments(Map<String, long[]> touched) {
+            refreshedSegments.add(touched);
+        }
+    };
+
+    FlagChangeFeed feed = new FlagChangeFeed(jdbcTemplate, snapshotService, registry);
+
+    @Test
+    void doesNotPollBeforeTheSnapshotIsHydrated() {
+        feed.poll();
+
+        assertEquals(List.of(), statements);
+    }
+
+    @Test
+    void reloadsEachChangedFlagOnceAndSkipsTransactionsStillRunning() {
+        horizons.add(100L);
+        feed.run(null);
+        // Committed while the snapshot was loading, so the full load may not have seen it.
+        flagChanges.add(new FlagChange(100, "checkout"));
+        flagChanges.add(new FlagChange(101, "dark-mode"));
+        flagChanges.add(new FlagChange(101, "checkout"));
+        // Written by the oldest transaction still running when the next poll reads its horizon.
+        flagChanges.add(new FlagChange(105, "search"));
+
+        horizons.add(105L);
+        feed.poll();
+        horizons.add(110L);
+        feed.poll();
+
+        assertEquals(List.of("rebuild"), calls);
+        assertEquals(List.of(List.of("checkout", "dark-mode"), List.of("search")), refreshed);
+        assertEquals(110.0, registry.get("flags.sync.cursor").gauge().value());
+    }
+
+    @Test
+    void readsNothingUntilTheHorizonMoves() {
+        horizons.add(100L);
+        feed.run(null);
+        statements.clear();
+
+        horizons.add(100L);
+        feed.poll();
+
+        assertEquals(1, statements.size());
+        assertEquals(List.of(), refreshed);
+    }
+
+    @Test
+    void refreshesTheSegmentMembersThatChanged() {
+        horizons.add(100L);
+        feed.run(null);
+        segmentChanges.add(new SegmentChange(100, "beta-testers", 11));
+        segmentChanges.add(new SegmentChange(102, "beta-testers", 12));
+
+        horizons.add(105L);
+        feed.poll();
+
+        assertEquals(List.of(), refreshed);
+        assertEquals(1, refreshedSegments.size());
+        assertArrayEquals(new long[]{11, 12}, refreshedSegments.get(0).get("beta-testers"));
+    }
+
+    private static boolean inRange(long txid, Object[] range) {
+        return txid >= (Long) range[0] && txid < (Long) range[1];
+    }
+
+    private static ResultSet resultSet(Map<?, ?> row) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getString", "getObject" -> row.get(args[0]);
+                    case "getLong" -> (Long) row.get(args[0]);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,206 @@
+package io.flamingock.flags.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.FlagSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Subscribers are emitters that record what they are sent. Each subscriber's events are sent in
+ * the order the dispatcher queued them, so once a subscriber has a heartbeat queued after its
+ * other events, it has been sent all of them.
+ */
+class FlagEventBroadcasterTest {
+
+    static final Pattern EVENT = Pattern.compile("id:[^-\\n]+-(\\d+)\\nevent:([\\w-]+)");
+
+    static final CompiledFlag CHECKOUT = CompiledFlag.of("checkout", true, 10_000, 2, List.of());
+    static final CompiledFlag DARK_MODE = CompiledFlag.of("dark-mode", false, 0, 2, List.of());
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    FlagSnapshotService snapshotService = new FlagSnapshotService(null, null, event -> {
+    }, registry);
+    String epoch = snapshotService.epoch();
+    FlagEventBroadcaster broadcaster;
+
+    @AfterEach
+    void stop() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void resumesWithOnlyTheDeltasAfterTheLastEventId() throws InterruptedException {
+        broadcaster = broadcaster(16);
+        publishThreeVersions();
+
+        RecordingEmitter resumed = subscribe(epoch + "-1");
+        broadcaster.heartbeat();
+
+        assertEquals(List.of("flag-updated 2", "flag-removed 3"), resumed.received());
+    }
+
+    @Test
+    void sendsNothingToAClientThatIsUpToDate() throws InterruptedException {
+        broadcaster = broadcaster(16);
+        publishThreeVersions();
+
+        RecordingEmitter resumed = subscribe(epoch + "-3");
+        broadcaster.heartbeat();
+
+        assertEquals(List.of(), resumed.received());
+    }
+
+    @Test
+    void sendsASnapshotOnceARebuildHasClearedTheHistory() throws InterruptedException {
+        broadcaster = broadcaster(16);
+        publishThreeVersions();
+        broadcaster.onSnapshotChanged(FlagSnapshotChanged.full(FlagSnapshot.of(4, List.of(CHECKOUT, DARK_MODE))));
+
+        RecordingEmitter resumed = subscribe(epoch + "-2");
+        broadcaster.heartbeat();
+
+        assertEquals(List.of("snapshot 4"), resumed.received());
+    }
+
+    @Test
+    void sendsASnapshotWhenTheMissedDeltasAreNoLongerKept() throws InterruptedException {
+        broadcaster = broadcaster(1);
+        publishThreeVersions();
+
+        RecordingEmitter evicted = subscribe(epoch + "-1");
+        RecordingEmitter otherProcess = subscribe("0000000-2");
+        broadcaster.heartbeat();
+
+        assertEquals(List.of("snapshot 3"), evicted.received());
+        assertEquals(List.of("snapshot 3"), otherProcess.received());
+    }
+
+    @Test
+    void aStalledSubscriberIsCompletedWithoutHoldingUpTheOthers() throws InterruptedException {
+        broadcaster = new FlagEventBroadcaster(snapshotService, new ObjectMapper(), registry, 16, 4, 60_000);
+        broadcaster.onSnapshotChanged(FlagSnapshotChanged.full(FlagSnapshot.of(1, List.of(CHECKOUT))));
+        StalledEmitter stalled = new StalledEmitter();
+        broadcaster.subscribe(null, stalled);
+        try {
+            assertTrue(stalled.sending.await(5, TimeUnit.SECONDS));
+            RecordingEmitter live = subscribe(null);
+            assertEquals("snapshot 1", live.next());
+
+            for (long version = 2; version <= 7; version++) {
+                broadcaster.onSnapshotChanged(FlagSnapshotChanged.partial(
+                        FlagSnapshot.of(version, List.of(CHECKOUT)), List.of("checkout")));
+                assertEquals("flag-updated " + version, live.next());
+            }
+
+            assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+            assertEquals(1.0, registry.get("flags.stream.subscribers").gauge().value());
+        } finally {
+            stalled.release.countDown();
+        }
+    }
+
+    private FlagEventBroadcaster broadcaster(int historySize) {
+        return new FlagEventBroadcaster(snapshotService, new ObjectMapper(), registry, historySize, 256, 60_000);
+    }
+
+    /**
+     * Version 1 is a full snapshot with {@code checkout}, 2 adds {@code dark-mode} and 3 removes
+     * {@code checkout}.
+     */
+    private void publishThreeVersions() {
+        broadcaster.onSnapshotChanged(FlagSnapshotChanged.full(FlagSnapshot.of(1, List.of(CHECKOUT))));
+        broadcaster.onSnapshotChanged(FlagSnapshotChanged.partial(
+                FlagSnapshot.of(2, List.of(CHECKOUT, DARK_MODE)), List.of("dark-mode")));
+        broadcaster.onSnapshotChanged(FlagSnapshotChanged.partial(
+                FlagSnapshot.of(3, List.of(DARK_MODE)), List.of("checkout")));
+    }
+
+    private RecordingEmitter subscribe(String lastEventId) {
+        RecordingEmitter emitter = new RecordingEmitter();
+        broadcaster.subscribe(lastEventId, emitter);
+        return emitter;
+    }
+
+    static class RecordingEmitter extends SseEmitter {
+
+        final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        RecordingEmitter() {
+            super(60_000L);
+        }
+
+        @Override
+        public void send(Set<DataWithMediaType> event) {
+            StringBuilder text = new StringBuilder();
+            event.forEach(part -> text.append(part.getData()));
+            events.add(text.toString());
+        }
+
+        /**
+         * Name and version of the next event, waiting for it to be sent.
+         */
+        String next() throws InterruptedException {
+            String event = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "no event within 5s");
+            Matcher matcher = EVENT.matcher(event);
+            return matcher.find() ? matcher.group(2) + " " + matcher.group(1) : event;
+        }
+
+        /**
+         * Name and version of each event received before the next heartbeat.
+         */
+        List<String> received() throws InterruptedException {
+            List<String> received = new ArrayList<>();
+            for (String event = next(); !event.startsWith(":heartbeat"); event = next()) {
+                received.add(event);
+            }
+            return received;
+        }
+    }
+
+    /**
+     * A client that stops reading: the first send blocks until the test releases it.
+     */
+    static class StalledEmitter extends SseEmitter {
+
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        StalledEmitter() {
+            super(60_000L);
+        }
+
+        @Override
+        public void send(Set<DataWithMediaType> event) {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+}
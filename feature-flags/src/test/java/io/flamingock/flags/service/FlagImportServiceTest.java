@@ -0,0 +1,122 @@
+package io.flamingock.flags.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.flamingock.flags.engine.FlagDefinition;
+import io.flamingock.flags.repository.CannedJdbcTemplate;
+import io.flamingock.flags.repository.ExportRows;
+import io.flamingock.flags.repository.FlagCursorRepository;
+import io.flamingock.flags.repository.FlagDefinitionRepository;
+import io.flamingock.flags.repository.FlagImportRepository;
+import io.flamingock.flags.repository.FlagImportRepository.ImportCounts;
+import io.flamingock.flags.repository.FlagImportRepository.ImportedFlag;
+import io.flamingock.flags.repository.SegmentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the import against repositories that record what they are given instead of writing it.
+ */
+class FlagImportServiceTest {
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    List<ImportedFlag> imported = new ArrayList<>();
+
+    FlagImportRepository importRepository = new FlagImportRepository(new JdbcTemplate(), null) {
+        @Override
+        public ImportCounts importAll(Iterator<ImportedFlag> flags, int defaultBucketingVersion) {
+            flags.forEachRemaining(imported::add);
+            return new ImportCounts(imported.size(), 0, 0);
+        }
+    };
+
+    SegmentRepository segmentRepository = new SegmentRepository(new JdbcTemplate()) {
+        @Override
+        public Set<String> names() {
+            return Set.of("beta-testers");
+        }
+    };
+
+    FlagDefinitionRepository definitionRepository = new FlagDefinitionRepository(new JdbcTemplate()) {
+        @Override
+        public List<FlagDefinition> findByNames(Collection<String> names) {
+            return List.of();
+        }
+    };
+
+    FlagImportService importService = new FlagImportService(importRepository, segmentRepository,
+            new FlagSnapshotService(definitionRepository, segmentRepository, event -> {
+            }, new SimpleMeterRegistry()),
+            objectMapper);
+
+    @Test
+    void importsWhatTheExportWrote() throws Exception {
+        FlagCursorRepository cursorRepository = new FlagCursorRepository(new CannedJdbcTemplate(ExportRows.rows()),
+                30_000, 300_000);
+        ByteArrayOutputStream export = new ByteArrayOutputStream();
+        new FlagStreamService(cursorRepository, objectMapper).writeExport(export);
+
+        FlagImportService.ImportSummary summary = importService.importNdjson(new ByteArrayInputStream(export.toByteArray()));
+
+        assertEquals(ExportRows.flags(), imported);
+        assertEquals(3, summary.flags());
+    }
+
+    @Test
+    void namesTheLineThatIsNotJson() {
+        assertRejected("line 2: ", """
+                {"name": "checkout"}
+                {"name": "dark-mode" "enabled": true}
+                """);
+    }
+
+    @Test
+    void rejectsAFlagThatAppearsTwice() {
+        assertRejected("line 3: flag checkout appears more than once", """
+                {"name": "checkout"}
+                {"name": "dark-mode"}
+                {"name": "checkout"}
+                """);
+    }
+
+    @Test
+    void rejectsARolloutOutsideTheBasisPoints() {
+        assertRejected("line 1: rolloutBasisPoints must be between 0 and 10000", """
+                {"name": "checkout", "rolloutBasisPoints": 10001}
+                """);
+    }
+
+    @Test
+    void rejectsARuleThatDoesNotCompile() {
+        assertRejected("line 2: not a finite number: Infinity", """
+                {"name": "checkout"}
+                {"name": "adults", "rules": [{"attribute": "age", "operator": "gte", "value": "Infinity"}]}
+                """);
+    }
+
+    @Test
+    void rejectsAnUnknownSegment() {
+        assertRejected("line 1: no segment named staff", """
+                {"name": "checkout", "rules": [{"attribute": "userId", "operator": "in_segment", "value": "staff"}]}
+                """);
+    }
+
+    private void assertRejected(String message, String ndjson) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> importService.importNdjson(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))));
+        assertTrue(e.getMessage().startsWith(message), e.getMessage());
+    }
+}
@@ -0,0 +1,206 @@
+package io.flamingock.flags.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rotation against an in-memory catalogue of partitions, each with whether its detach is pending,
+ * that the partition queries read and the DDL and {@code create_daily_partitions} change.
+ */
+class PartitionMaintenanceTest {
+
+    static final LocalDate TODAY = LocalDate.now(ZoneOffset.UTC);
+    static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    Map<String, Map<String, Boolean>> partitions = new TreeMap<>(Map.of(
+            "flag_exposures", new TreeMap<>(),
+            "flag_changes", new TreeMap<>(),
+            "segment_changes", new TreeMap<>()));
+    List<String> ddl = new ArrayList<>();
+    boolean lockAvailable = true;
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    JdbcTemplate jdbcTemplate = new JdbcTemplate() {
+        @Override
+        public <T> T execute(ConnectionCallback<T> action) {
+            try {
+                return action.doInConnection(connection());
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    PartitionMaintenance maintenance = new PartitionMaintenance(jdbcTemplate, registry, 7, 90, 30);
+
+    @Test
+    void createsTheDaysAheadAndDropsExpiredOnes() {
+        partition("flag_exposures", TODAY.minusDays(91), false);
+        partition("flag_exposures", TODAY.minusDays(90), false);
+        partition("flag_exposures", TODAY, false);
+        partition("flag_changes", TODAY.minusDays(31), true);
+
+        maintenance.rotate();
+
+        List<String> exposures = new ArrayList<>(List.of(name("flag_exposures", TODAY.minusDays(90))));
+        exposures.addAll(days("flag_exposures", TODAY, TODAY.plusDays(7)));
+        assertEquals(exposures, List.copyOf(partitions.get("flag_exposures").keySet()));
+        assertEquals(days("flag_changes", TODAY, TODAY.plusDays(7)), List.copyOf(partitions.get("flag_changes").keySet()));
+        assertEquals(days("segment_changes", TODAY, TODAY.plusDays(7)), List.copyOf(partitions.get("segment_changes").keySet()));
+        assertTrue(ddl.contains("ALTER TABLE flag_exposures DETACH PARTITION "
+                + name("flag_exposures", TODAY.minusDays(91)) + " CONCURRENTLY"), ddl.toString());
+        // An interrupted detach is finished, not started again.
+        assertTrue(ddl.contains("ALTER TABLE flag_changes DETACH PARTITION "
+                + name("flag_changes", TODAY.minusDays(31)) + " FINALIZE"), ddl.toString());
+
+        Health health = maintenance.health();
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(7L, health.getDetails().get("daysAhead"));
+        assertEquals(7.0, registry.get("flags.partitions.days-ahead").gauge().value());
+    }
+
+    @Test
+    void reportsTheShortestTableWhenAnotherNodeHoldsTheLock() {
+        lockAvailable = false;
+        for (LocalDate day = TODAY; !day.isAfter(TODAY.plusDays(7)); day = day.plusDays(1)) {
+            partition("flag_exposures", day, false);
+            partition("flag_changes", day, false);
+        }
+        partition("segment_changes", TODAY, false);
+        // Being detached, so it takes no writes.
+        partition("segment_changes", TODAY.plusDays(1), true);
+
+        maintenance.rotate();
+
+        assertEquals(List.of(), ddl);
+        Health health = maintenance.health();
+        assertEquals(Status.DOWN, health.getStatus());
+        assertEquals(TODAY.toString(), health.getDetails().get("coveredThrough"));
+        assertEquals(0.0, registry.get("flags.partitions.days-ahead").gauge().value());
+    }
+
+    @Test
+    void isDownUntilCoverageHasBeenRead() {
+        assertEquals(Status.DOWN, maintenance.health().getStatus());
+        assertTrue(Double.isNaN(registry.get("flags.partitions.days-ahead").gauge().value()));
+    }
+
+    private void partition(String table, LocalDate day, boolean detachPending) {
+        partitions.get(table).put(name(table, day), detachPending);
+    }
+
+    private static String name(String table, LocalDate day) {
+        return table + "_p" + SUFFIX.format(day);
+    }
+
+    private static List<String> days(String table, LocalDate first, LocalDate last) {
+        List<String> names = new ArrayList<>();
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            names.add(name(table, day));
+        }
+        return names;
+    }
+
+    private Connection connection() {
+        return proxy(Connection.class, (method, args) -> switch (method) {
+            case "createStatement" -> proxy(Statement.class, (statementMethod, statementArgs) -> switch (statementMethod) {
+                case "executeQuery" -> row(!((String) statementArgs[0]).contains("pg_try_advisory_lock") || lockAvailable);
+                case "execute" -> {
+                    execute((String) statementArgs[0]);
+                    yield true;
+                }
+                case "close" -> null;
+                default -> throw new UnsupportedOperationException(statementMethod);
+            });
+            case "prepareStatement" -> prepareStatement((String) args[0]);
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private PreparedStatement prepareStatement(String sql) {
+        List<Object> parameters = new ArrayList<>();
+        return proxy(PreparedStatement.class, (method, args) -> switch (method) {
+            case "setString", "setDate" -> {
+                parameters.add(args[1]);
+                yield null;
+            }
+            case "executeQuery" -> sql.contains("create_daily_partitions")
+                    ? row(createDaily((String) parameters.get(0),
+                    ((Date) parameters.get(1)).toLocalDate(), ((Date) parameters.get(2)).toLocalDate()))
+                    : rows(partitions.get((String) parameters.get(0)).entrySet().stream()
+                    .map(partition -> new Object[]{partition.getKey(), partition.getValue()})
+                    .toList());
+            case "close" -> null;
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private int createDaily(String table, LocalDate first, LocalDate last) {
+        int created = 0;
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            if (partitions.get(table).putIfAbsent(name(table, day), false) == null) {
+                created++;
+            }
+        }
+        return created;
+    }
+
+    private void execute(String sql) {
+        ddl.add(sql);
+        String[] words = sql.split(" ");
+        if (sql.startsWith("DROP TABLE ")) {
+            partitions.values().forEach(table -> table.remove(words[2]));
+        } else if (sql.endsWith(" CONCURRENTLY")) {
+            partitions.get(words[2]).put(words[5], true);
+        }
+    }
+
+    private static ResultSet row(Object... values) {
+        return rows(Collections.singletonList(values));
+    }
+
+    private static ResultSet rows(List<Object[]> rows) {
+        int[] current = {-1};
+        return proxy(ResultSet.class, (method, args) -> switch (method) {
+            case "next" -> ++current[0] < rows.size();
+            case "getString" -> (String) rows.get(current[0])[(Integer) args[0] - 1];
+            case "getBoolean" -> (Boolean) rows.get(current[0])[(Integer) args[0] - 1];
+            case "getInt" -> (Integer) rows.get(current[0])[(Integer) args[0] - 1];
+            case "close" -> null;
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    interface Answer {
+        Object answer(String method, Object[] args) throws SQLException;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Answer answer) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> answer.answer(method.getName(), args));
+    }
+}
@@ -0,0 +1,88 @@
+package io.flamingock.flags.service;
+
+import io.flamingock.flags.engine.CompiledFlag;
+import io.flamingock.flags.engine.CompiledRule;
+import io.flamingock.flags.engine.FlagSnapshot;
+import io.flamingock.flags.engine.Segment;
+import io.flamingock.flags.repository.CannedJdbcTemplate;
+import io.flamingock.flags.repository.RuleLookupRepository;
+import io.flamingock.flags.service.TargetingLookupService.TargetingMatch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The candidate query is answered with canned rows, including ones the snapshot no longer agrees
+ * with, the way a lookup racing a rule change would see them.
+ */
+class TargetingLookupServiceTest {
+
+    static final UUID COUNTRY_RULE = new UUID(0, 1);
+    static final UUID PLAN_RULE = new UUID(0, 2);
+    static final UUID FRANCE_RULE = new UUID(0, 3);
+
+    static final FlagSnapshot SNAPSHOT = FlagSnapshot.of(1, List.of(
+            CompiledFlag.of("checkout", true, 0, 2, List.of(CompiledRule.compile(COUNTRY_RULE, "country", "in", "ES,PT"))),
+            CompiledFlag.of("beta", false, 0, 2, List.of(CompiledRule.compile(PLAN_RULE, "plan", "equals", "pro"))),
+            CompiledFlag.of("legacy", true, 0, 2, List.of(CompiledRule.compile(FRANCE_RULE, "country", "equals", "FR")))));
+
+    CannedJdbcTemplate jdbcTemplate = new CannedJdbcTemplate(List.of());
+
+    FlagSnapshotService snapshotService = new FlagSnapshotService(null, null, event -> {
+    }, new SimpleMeterRegistry()) {
+        @Override
+        public FlagSnapshot current() {
+            return SNAPSHOT;
+        }
+    };
+
+    TargetingLookupService lookupService = new TargetingLookupService(new RuleLookupRepository(jdbcTemplate), snapshotService);
+
+    @Test
+    void returnsTheCandidatesWhoseCompiledRuleMatches() {
+        jdbcTemplate.thenAnswer(List.of(
+                candidate("checkout", COUNTRY_RULE),
+                candidate("beta", PLAN_RULE),
+                // The rule changed after the index was read: legacy now targets FR only.
+                candidate("legacy", FRANCE_RULE),
+                candidate("deleted", new UUID(0, 9))));
+
+        List<TargetingMatch> matches = lookupService.matching(Map.of("country", "ES", "plan", "pro"));
+
+        assertEquals(List.of(
+                new TargetingMatch("beta", false, PLAN_RULE, "plan", "equals", "pro"),
+                new TargetingMatch("checkout", true, COUNTRY_RULE, "country", "in", "ES,PT")), matches);
+    }
+
+    @Test
+    void bindsEachAttributeWithItsValueAndMemberHash() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("country", "ES");
+        attributes.put("userId", "user-1");
+
+        lookupService.matching(attributes);
+
+        Object[] bound = jdbcTemplate.arguments().get(0);
+        assertArrayEquals(new Object[]{"country", "userId"}, (Object[]) bound[0]);
+        assertArrayEquals(new Object[]{"ES", "user-1"}, (Object[]) bound[1]);
+        assertArrayEquals(new Object[]{Segment.hash("ES"), Segment.hash("user-1")}, (Object[]) bound[2]);
+        assertArrayEquals(new Object[]{"ES", "user-1"}, (Object[]) bound[3]);
+    }
+
+    @Test
+    void anEmptyContextIsNotLookedUp() {
+        assertEquals(List.of(), lookupService.matching(Map.of()));
+        assertEquals(List.of(), jdbcTemplate.statements());
+    }
+
+    private static Map<String, Object> candidate(String flag, UUID ruleId) {
+        return Map.of("flag_name", flag, "id", ruleId);
+    }
+}